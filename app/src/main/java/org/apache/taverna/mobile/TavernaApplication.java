@@ -23,10 +23,49 @@ import com.facebook.stetho.Stetho;
 import com.raizlabs.android.dbflow.config.FlowConfig;
 import com.raizlabs.android.dbflow.config.FlowManager;
 
+import org.apache.taverna.mobile.data.CatalogueMirror;
+import org.apache.taverna.mobile.data.RunFrameworkCache;
+import org.apache.taverna.mobile.data.RunHistorySync;
+import org.apache.taverna.mobile.data.local.DBHelper;
+import org.apache.taverna.mobile.data.local.FavouriteWorkflowIds;
+import org.apache.taverna.mobile.data.local.WorkflowCacheEvictor;
+import org.apache.taverna.mobile.data.local.WorkflowModelCache;
+import org.apache.taverna.mobile.data.remote.PlayerApiManager;
+import org.apache.taverna.mobile.utils.MemoryPressureCoordinator;
+import org.apache.taverna.mobile.utils.RunStatusMonitor;
+import org.apache.taverna.mobile.utils.SegmentedDownloader;
+import org.apache.taverna.mobile.utils.TaskExecutors;
+import org.apache.taverna.mobile.utils.UploadedWorkflows;
+
 import android.app.Application;
+import android.util.Log;
 
 public class TavernaApplication extends Application {
 
+    private static final String LOG_TAG = TavernaApplication.class.getSimpleName();
+
+    private static WorkflowCacheEvictor sWorkflowCacheEvictor;
+
+    private static FavouriteWorkflowIds sFavouriteWorkflowIds;
+
+    private static WorkflowModelCache sWorkflowModelCache;
+
+    private static MemoryPressureCoordinator sMemoryPressureCoordinator;
+
+    private static CatalogueMirror sCatalogueMirror;
+
+    private static PlayerApiManager sPlayerApiManager;
+
+    private static RunStatusMonitor sRunStatusMonitor;
+
+    private static RunHistorySync sRunHistorySync;
+
+    private static SegmentedDownloader sSegmentedDownloader;
+
+    private static RunFrameworkCache sRunFrameworkCache;
+
+    private static UploadedWorkflows sUploadedWorkflows;
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -35,5 +74,94 @@ public class TavernaApplication extends Application {
 
         Stetho.initializeWithDefaults(this);
 
+        sMemoryPressureCoordinator = new MemoryPressureCoordinator();
+
+        sFavouriteWorkflowIds = new FavouriteWorkflowIds();
+        sFavouriteWorkflowIds.load();
+
+        sWorkflowModelCache = new WorkflowModelCache();
+        sMemoryPressureCoordinator.register("Workflow models", sWorkflowModelCache);
+
+        sWorkflowCacheEvictor = new WorkflowCacheEvictor(this, sWorkflowModelCache);
+        sWorkflowCacheEvictor.schedule();
+
+        sPlayerApiManager = new PlayerApiManager(this);
+
+        sRunStatusMonitor = new RunStatusMonitor(this);
+
+        sRunHistorySync = new RunHistorySync(this, new DBHelper());
+
+        sRunFrameworkCache = new RunFrameworkCache(this);
+
+        sUploadedWorkflows = new UploadedWorkflows(this);
+
+        sSegmentedDownloader = new SegmentedDownloader(this);
+        sSegmentedDownloader.resumePending();
+
+        sCatalogueMirror = new CatalogueMirror(this, new DBHelper());
+        if (sCatalogueMirror.isEnabled() && sCatalogueMirror.isIncomplete()) {
+            sCatalogueMirror.start();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            //once per visit to the app, before the caches give memory back
+            Log.i(LOG_TAG, "Task pools " + TaskExecutors.getStats());
+            Log.i(LOG_TAG, sWorkflowModelCache.toString());
+        }
+        sMemoryPressureCoordinator.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        sMemoryPressureCoordinator.onLowMemory();
+    }
+
+    public static WorkflowCacheEvictor getWorkflowCacheEvictor() {
+        return sWorkflowCacheEvictor;
+    }
+
+    public static FavouriteWorkflowIds getFavouriteWorkflowIds() {
+        return sFavouriteWorkflowIds;
+    }
+
+    public static WorkflowModelCache getWorkflowModelCache() {
+        return sWorkflowModelCache;
+    }
+
+    public static MemoryPressureCoordinator getMemoryPressureCoordinator() {
+        return sMemoryPressureCoordinator;
+    }
+
+    public static CatalogueMirror getCatalogueMirror() {
+        return sCatalogueMirror;
+    }
+
+    public static PlayerApiManager getPlayerApiManager() {
+        return sPlayerApiManager;
+    }
+
+    public static RunStatusMonitor getRunStatusMonitor() {
+        return sRunStatusMonitor;
+    }
+
+    public static RunHistorySync getRunHistorySync() {
+        return sRunHistorySync;
+    }
+
+    public static SegmentedDownloader getSegmentedDownloader() {
+        return sSegmentedDownloader;
+    }
+
+    public static RunFrameworkCache getRunFrameworkCache() {
+        return sRunFrameworkCache;
+    }
+
+    public static UploadedWorkflows getUploadedWorkflows() {
+        return sUploadedWorkflows;
     }
 }
@@ -30,6 +30,8 @@ import org.apache.taverna.mobile.ui.anouncements.AnnouncementFragment;
 import org.apache.taverna.mobile.ui.favouriteworkflow.FavouriteWorkflowsFragment;
 import org.apache.taverna.mobile.ui.workflow.WorkflowFragment;
 import org.apache.taverna.mobile.utils.ActivityUtils;
+import org.apache.taverna.mobile.utils.PriorityExecutor.Priority;
+import org.apache.taverna.mobile.utils.TaskExecutors;
 import org.apache.taverna.mobile.utils.WorkflowOpen;
 
 import android.app.Dialog;
@@ -241,7 +243,8 @@ public class DashboardMainActivity extends AppCompatActivity {
             String type = getMimeType(data.getData().getPath());
             if (type.equals("text/xml") || type.equals("application/vnd.taverna.t2flow+xml")) {
 
-                new WorkflowOpen(this).execute(workflowPath);
+                new WorkflowOpen(this).executeOnExecutor(TaskExecutors.network(Priority.HIGH),
+                        workflowPath);
             } else {
                 Toast.makeText(getBaseContext(), "Invalid worklow. Please try again", Toast
                         .LENGTH_LONG).show();
@@ -26,6 +26,8 @@ package org.apache.taverna.mobile.activities;
 */
 
 import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.utils.PriorityExecutor.Priority;
+import org.apache.taverna.mobile.utils.TaskExecutors;
 
 import android.app.ProgressDialog;
 import android.content.Context;
@@ -125,8 +127,9 @@ public class LoginActivity extends ActionBarActivity {
                     password.setError(getString(R.string.passworderr));
                 } else {
                     // login request
-                    new LoginTask(getActivity()).execute(email.getText().toString(), password
-                            .getText().toString());
+                    new LoginTask(getActivity()).executeOnExecutor(
+                            TaskExecutors.network(Priority.HIGH), email.getText().toString(),
+                            password.getText().toString());
                 }
 
             }
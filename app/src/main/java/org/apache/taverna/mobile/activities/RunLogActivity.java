@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.activities;
+
+import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.utils.RunLogTail;
+
+import android.os.Bundle;
+import android.support.v7.app.ActionBarActivity;
+import android.view.View;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+/**
+ * Shows the log of a run as it is written, through {@link RunLogTail}, while the screen is
+ * visible.
+ */
+public class RunLogActivity extends ActionBarActivity implements RunLogTail.Listener {
+
+    public static final String EXTRA_RUN_ID = "run_id";
+
+    public static final String EXTRA_LOG_URL = "log_url";
+
+    private ScrollView mScroll;
+
+    private TextView mLog;
+
+    private RunLogTail mTail;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_run_log);
+        mScroll = (ScrollView) findViewById(R.id.scrollRunLog);
+        mLog = (TextView) findViewById(R.id.textRunLog);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        mTail = new RunLogTail(getIntent().getIntExtra(EXTRA_RUN_ID, -1),
+                getIntent().getStringExtra(EXTRA_LOG_URL), this);
+        mTail.start();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mTail.stop();
+        mTail = null;
+    }
+
+    @Override
+    public void onLogChanged(CharSequence log, boolean finished) {
+        //only follow the end if the user has not scrolled up to read
+        View content = mScroll.getChildAt(0);
+        boolean atEnd = content.getBottom() - (mScroll.getHeight() + mScroll.getScrollY()) <= 0;
+
+        mLog.setText(log);
+        if (finished && getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(R.string.run_log_finished);
+        }
+        if (atEnd) {
+            mScroll.post(new Runnable() {
+                @Override
+                public void run() {
+                    mScroll.fullScroll(View.FOCUS_DOWN);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.activities;
+
+import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.utils.RemoteZipReader;
+import org.apache.taverna.mobile.utils.RemoteZipReader.Entry;
+
+import android.app.AlertDialog;
+import android.content.DialogInterface;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.support.v7.app.ActionBarActivity;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Lists the entries of a run's output archive and shows one at a time, reading the archive on
+ * the Player with {@link RemoteZipReader} instead of downloading it. Entries that decode as
+ * images are shown subsampled to the screen size, anything else as text read a page at a time,
+ * keeping only the pages around the visible ones, so memory use does not depend on the size of
+ * the archive.
+ */
+public class RunOutputsActivity extends ActionBarActivity
+        implements AdapterView.OnItemClickListener {
+
+    public static final String EXTRA_OUTPUTS_URL = "outputs_url";
+
+    private static final String LOG_TAG = RunOutputsActivity.class.getSimpleName();
+
+    private static final int PAGE_CHARS = 8 * 1024;
+
+    //pages kept loaded on either side of the visible ones
+    private static final int WINDOW_PAGES = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CompositeSubscription mSubscriptions = new CompositeSubscription();
+
+    private final List<Entry> mEntries = new ArrayList<>();
+
+    private RemoteZipReader mReader;
+
+    private ArrayAdapter<String> mAdapter;
+
+    private View mProgress;
+
+    private TextView mEmpty;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_run_outputs);
+
+        //the shared Player client adds the credentials itself
+        mReader = new RemoteZipReader(TavernaApplication.getPlayerApiManager().getOkHttpClient(),
+                getIntent().getStringExtra(EXTRA_OUTPUTS_URL), null);
+
+        mProgress = findViewById(R.id.progressRunOutputs);
+        mEmpty = (TextView) findViewById(android.R.id.empty);
+        mAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
+        ListView list = (ListView) findViewById(android.R.id.list);
+        list.setAdapter(mAdapter);
+        list.setOnItemClickListener(this);
+
+        loadEntries();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSubscriptions.unsubscribe();
+    }
+
+    @Override
+    public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+        open(mEntries.get(position));
+    }
+
+    private void loadEntries() {
+        mSubscriptions.add(Observable.create(new Observable.OnSubscribe<List<Entry>>() {
+            @Override
+            public void call(Subscriber<? super List<Entry>> subscriber) {
+                if (subscriber.isUnsubscribed()) return;
+                try {
+                    subscriber.onNext(mReader.readEntries());
+                    subscriber.onCompleted();
+                } catch (IOException e) {
+                    subscriber.onError(e);
+                }
+            }
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<List<Entry>>() {
+                    @Override
+                    public void call(List<Entry> entries) {
+                        mProgress.setVisibility(View.GONE);
+                        for (Entry entry : entries) {
+                            if (entry.isDirectory()) continue;
+                            mEntries.add(entry);
+                            mAdapter.add(entry.getName() + " (" + describeSize(entry.getSize())
+                                    + ")");
+                        }
+                        mEmpty.setVisibility(mEntries.isEmpty() ? View.VISIBLE : View.GONE);
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(LOG_TAG, "loadEntries: ", throwable);
+                        mProgress.setVisibility(View.GONE);
+                        mEmpty.setVisibility(View.VISIBLE);
+                    }
+                }));
+    }
+
+    //output names often have no extension, so the content decides: whatever has image bounds is
+    //shown as an image and everything else as text
+    private void open(final Entry entry) {
+        mProgress.setVisibility(View.VISIBLE);
+        mSubscriptions.add(Observable.create(new Observable.OnSubscribe<BitmapFactory.Options>() {
+            @Override
+            public void call(Subscriber<? super BitmapFactory.Options> subscriber) {
+                if (subscriber.isUnsubscribed()) return;
+                try {
+                    subscriber.onNext(readBounds(entry));
+                    subscriber.onCompleted();
+                } catch (IOException e) {
+                    subscriber.onError(e);
+                }
+            }
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<BitmapFactory.Options>() {
+                    @Override
+                    public void call(BitmapFactory.Options bounds) {
+                        if (bounds.outWidth > 0 && bounds.outHeight > 0) {
+                            showImage(entry, bounds);
+                        } else {
+                            mProgress.setVisibility(View.GONE);
+                            showText(entry);
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(LOG_TAG, "open: ", throwable);
+                        mProgress.setVisibility(View.GONE);
+                        Toast.makeText(RunOutputsActivity.this, "Unable to show "
+                                + entry.getName(), Toast.LENGTH_LONG).show();
+                    }
+                }));
+    }
+
+    //only the header is decoded, so this stops after the first few bytes of the entry
+    private BitmapFactory.Options readBounds(Entry entry) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        InputStream in = mReader.open(entry);
+        try {
+            BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        return options;
+    }
+
+    private void showImage(final Entry entry, final BitmapFactory.Options bounds) {
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        final int maxWidth = metrics.widthPixels;
+        final int maxHeight = metrics.heightPixels;
+
+        mSubscriptions.add(Observable.create(new Observable.OnSubscribe<Bitmap>() {
+            @Override
+            public void call(Subscriber<? super Bitmap> subscriber) {
+                if (subscriber.isUnsubscribed()) return;
+                try {
+                    subscriber.onNext(decodeSampled(entry, bounds, maxWidth, maxHeight));
+                    subscriber.onCompleted();
+                } catch (IOException e) {
+                    subscriber.onError(e);
+                }
+            }
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Bitmap>() {
+                    @Override
+                    public void call(Bitmap bitmap) {
+                        mProgress.setVisibility(View.GONE);
+                        ImageView image = new ImageView(RunOutputsActivity.this);
+                        image.setAdjustViewBounds(true);
+                        image.setImageBitmap(bitmap);
+                        new AlertDialog.Builder(RunOutputsActivity.this)
+                                .setTitle(entry.getName())
+                                .setView(image)
+                                .show();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(LOG_TAG, "showImage: ", throwable);
+                        mProgress.setVisibility(View.GONE);
+                        Toast.makeText(RunOutputsActivity.this, "Unable to show "
+                                + entry.getName(), Toast.LENGTH_LONG).show();
+                    }
+                }));
+    }
+
+    //streams the entry again to decode it at a reduced size
+    private Bitmap decodeSampled(Entry entry, BitmapFactory.Options bounds, int maxWidth,
+                                 int maxHeight) throws IOException {
+        int sampleSize = 1;
+        while (bounds.outWidth / sampleSize > maxWidth
+                || bounds.outHeight / sampleSize > maxHeight) {
+            sampleSize *= 2;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        InputStream in = mReader.open(entry);
+        try {
+            Bitmap bitmap = BitmapFactory.decodeStream(in, null, options);
+            if (bitmap == null) {
+                throw new IOException("Unable to decode " + entry.getName());
+            }
+            return bitmap;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void showText(Entry entry) {
+        final TextPager pager = new TextPager(entry);
+        ListView pages = new ListView(this);
+        pages.setAdapter(pager);
+        pages.setOnScrollListener(pager);
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(entry.getName())
+                .setView(pages)
+                .create();
+        dialog.setOnDismissListener(pager);
+        dialog.show();
+        pager.update();
+    }
+
+    private static void skipFully(Reader reader, long count) throws IOException {
+        while (count > 0) {
+            long skipped = reader.skip(count);
+            if (skipped <= 0) return;
+            count -= skipped;
+        }
+    }
+
+    private static String describeSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return bytes / 1024 + " KB";
+        return bytes / (1024 * 1024) + " MB";
+    }
+
+    /**
+     * Pages of one text entry. Only the pages within {@link #WINDOW_PAGES} of the visible ones
+     * are kept; the entry is read forward from one open stream, and reopened and skipped through
+     * to reach a page that was dropped behind it.
+     */
+    private class TextPager extends BaseAdapter
+            implements AbsListView.OnScrollListener, DialogInterface.OnDismissListener {
+
+        private final Entry mEntry;
+
+        private final SparseArray<String> mPages = new SparseArray<>();
+
+        private final Object mTextLock = new Object();
+
+        //guarded by mTextLock, opened and read on the io scheduler
+        private Reader mText;
+
+        //guarded by mTextLock, the page mText reads next
+        private int mTextPage;
+
+        private boolean mClosed;
+
+        private Subscription mLoad;
+
+        private boolean mLoading;
+
+        private boolean mFailed;
+
+        //pages found so far, the list grows as the entry is read
+        private int mPageCount;
+
+        private boolean mFinished;
+
+        private int mFirstVisible;
+
+        private int mLastVisible;
+
+        TextPager(Entry entry) {
+            mEntry = entry;
+        }
+
+        //drops the pages far from the visible ones, then loads the first visible page missing,
+        //or the next page of the entry once the end of the list is visible
+        void update() {
+            if (mFailed || mLoading) return;
+            for (int i = mPages.size() - 1; i >= 0; i--) {
+                int index = mPages.keyAt(i);
+                if (index < mFirstVisible - WINDOW_PAGES || index > mLastVisible + WINDOW_PAGES) {
+                    mPages.removeAt(i);
+                }
+            }
+            for (int index = mFirstVisible; index <= mLastVisible && index < mPageCount; index++) {
+                if (mPages.get(index) == null) {
+                    loadPage(index);
+                    return;
+                }
+            }
+            if (!mFinished && mLastVisible >= mPageCount - 1) {
+                loadPage(mPageCount);
+            }
+        }
+
+        private void loadPage(final int index) {
+            mLoading = true;
+            mLoad = Observable.create(new Observable.OnSubscribe<String>() {
+                @Override
+                public void call(Subscriber<? super String> subscriber) {
+                    if (subscriber.isUnsubscribed()) return;
+                    try {
+                        subscriber.onNext(readPage(index));
+                        subscriber.onCompleted();
+                    } catch (IOException e) {
+                        subscriber.onError(e);
+                    }
+                }
+            }).subscribeOn(Schedulers.io())
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(new Action1<String>() {
+                        @Override
+                        public void call(String page) {
+                            mLoading = false;
+                            if (index == mPageCount) {
+                                mFinished = page.length() < PAGE_CHARS;
+                                if (!page.isEmpty()) mPageCount++;
+                            }
+                            if (!page.isEmpty()) mPages.put(index, page);
+                            notifyDataSetChanged();
+                            update();
+                        }
+                    }, new Action1<Throwable>() {
+                        @Override
+                        public void call(Throwable throwable) {
+                            Log.e(LOG_TAG, "loadPage: ", throwable);
+                            mLoading = false;
+                            mFailed = true;
+                        }
+                    });
+            mSubscriptions.add(mLoad);
+        }
+
+        //runs on the io scheduler, one page at a time; the lock keeps close() out of a read
+        private String readPage(int index) throws IOException {
+            synchronized (mTextLock) {
+                if (mClosed) return "";
+                if (mText == null || index < mTextPage) {
+                    if (mText != null) mText.close();
+                    mText = new InputStreamReader(mReader.open(mEntry), UTF_8);
+                    mTextPage = 0;
+                }
+                skipFully(mText, (long) (index - mTextPage) * PAGE_CHARS);
+                char[] page = new char[PAGE_CHARS];
+                int length = 0;
+                int count;
+                while (length < PAGE_CHARS
+                        && (count = mText.read(page, length, PAGE_CHARS - length)) != -1) {
+                    length += count;
+                }
+                mTextPage = index + 1;
+                return new String(page, 0, length);
+            }
+        }
+
+        //waits for a page that is being read, then closes the entry for good
+        private void close() throws IOException {
+            synchronized (mTextLock) {
+                mClosed = true;
+                if (mText != null) mText.close();
+            }
+        }
+
+        @Override
+        public void onDismiss(DialogInterface dialog) {
+            if (mLoad != null) {
+                mSubscriptions.remove(mLoad);
+            }
+            //closing a network stream, or waiting for a read in progress, may block
+            Observable.just(this).subscribeOn(Schedulers.io()).subscribe(new Action1<TextPager>() {
+                @Override
+                public void call(TextPager pager) {
+                    try {
+                        pager.close();
+                    } catch (IOException e) {
+                        Log.w(LOG_TAG, "onDismiss: ", e);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                             int totalItemCount) {
+            mFirstVisible = firstVisibleItem;
+            mLastVisible = firstVisibleItem + visibleItemCount - 1;
+            update();
+        }
+
+        @Override
+        public int getCount() {
+            return mPageCount;
+        }
+
+        @Override
+        public String getItem(int position) {
+            return mPages.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView page = (TextView) convertView;
+            if (page == null) {
+                page = new TextView(RunOutputsActivity.this);
+                page.setTypeface(Typeface.MONOSPACE);
+                int padding = (int) (8 * getResources().getDisplayMetrics().density);
+                page.setPadding(padding, 0, padding, 0);
+            }
+            String text = getItem(position);
+            page.setText(text != null ? text : getString(R.string.run_outputs_loading));
+            return page;
+        }
+    }
+}
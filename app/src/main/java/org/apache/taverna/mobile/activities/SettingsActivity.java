@@ -25,6 +25,8 @@ package org.apache.taverna.mobile.activities;
  */
 
 import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.CatalogueMirror;
 
 import android.annotation.TargetApi;
 import android.content.Context;
@@ -91,6 +93,23 @@ public class SettingsActivity extends PreferenceActivity {
                 }
             };
 
+    /**
+     * Starts the catalogue mirror when its preference is switched on and stops it when it is
+     * switched off.
+     */
+    private static Preference.OnPreferenceChangeListener sCatalogueMirrorListener =
+            new Preference.OnPreferenceChangeListener() {
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object value) {
+                    if (Boolean.TRUE.equals(value)) {
+                        TavernaApplication.getCatalogueMirror().start();
+                    } else {
+                        TavernaApplication.getCatalogueMirror().stop();
+                    }
+                    return true;
+                }
+            };
+
     /**
      * Helper method to determine if the device has an extra-large screen. For
      * example, 10" tablets are extra-large.
@@ -199,6 +218,8 @@ public class SettingsActivity extends PreferenceActivity {
         // to reflect the new value, per the Android Design guidelines.
         bindPreferenceSummaryToValue(findPreference("pref_server_url"));
         bindPreferenceSummaryToValue(findPreference("pref_player_url"));
+        findPreference(CatalogueMirror.PREF_ENABLED)
+                .setOnPreferenceChangeListener(sCatalogueMirrorListener);
     }
 
     /**
@@ -237,6 +258,8 @@ public class SettingsActivity extends PreferenceActivity {
             // guidelines.
             bindPreferenceSummaryToValue(findPreference("pref_server_url"));
             bindPreferenceSummaryToValue(findPreference("pref_player_url"));
+            findPreference(CatalogueMirror.PREF_ENABLED)
+                    .setOnPreferenceChangeListener(sCatalogueMirrorListener);
         }
     }
 
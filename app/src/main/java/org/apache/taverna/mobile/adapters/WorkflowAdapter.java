@@ -24,6 +24,7 @@ package org.apache.taverna.mobile.adapters;
  * under the License.
  */
 
+import com.bumptech.glide.Glide;
 import com.thebuzzmedia.sjxp.rule.IRule;
 
 import org.apache.taverna.mobile.R;
@@ -31,6 +32,8 @@ import org.apache.taverna.mobile.activities.WorkflowDetailActivity;
 import org.apache.taverna.mobile.fragments.workflowdetails.WorkflowdetailFragment;
 import org.apache.taverna.mobile.tavernamobile.User;
 import org.apache.taverna.mobile.tavernamobile.Workflow;
+import org.apache.taverna.mobile.utils.PriorityExecutor.Priority;
+import org.apache.taverna.mobile.utils.TaskExecutors;
 import org.apache.taverna.mobile.utils.WorkflowDB;
 import org.apache.taverna.mobile.utils.xmlparsers.MyExperimentXmlParserRules;
 import org.apache.taverna.mobile.utils.xmlparsers.WorkflowDetailParser;
@@ -163,6 +166,9 @@ public class WorkflowAdapter extends RecyclerView.Adapter<WorkflowAdapter.ViewHo
         final String uri = workflowList.get(i).getWorkflowDetailsUrl();
         final String desc_full = description;
 
+        //drops the author lookup still running for the workflow this row showed before
+        viewHolder.bind(uri);
+
         if (description.length() > 80) description = description.substring(0, 79) + " ...";
         viewHolder.author_name.setHint(author);
         viewHolder.wk_title.setHint(title);
@@ -256,10 +262,18 @@ public class WorkflowAdapter extends RecyclerView.Adapter<WorkflowAdapter.ViewHo
         });
 
         synchronized (this) {
-            new DetailLinkLoader(viewHolder).execute(uri, String.valueOf(i));
+            DetailLinkLoader detailLinkLoader = new DetailLinkLoader(viewHolder);
+            viewHolder.track(detailLinkLoader);
+            detailLinkLoader.executeOnExecutor(TaskExecutors.network(Priority.LOW), uri, uri);
         }
     }
 
+    @Override
+    public void onViewRecycled(ViewHolder viewHolder) {
+        super.onViewRecycled(viewHolder);
+        viewHolder.unbind();
+    }
+
     public void setData(List<Workflow> workflowList) {
         this.workflowList = workflowList;
     }
@@ -289,6 +303,9 @@ public class WorkflowAdapter extends RecyclerView.Adapter<WorkflowAdapter.ViewHo
         public final Button btn_download_workflow;
         public final Button btn_mark_workflow;
         public final LinearLayout infolayout;
+        //details uri of the bound workflow, results loaded for any other uri are dropped
+        private volatile String mBoundUri;
+        private final List<AsyncTask<?, ?, ?>> mTasks = new ArrayList<AsyncTask<?, ?, ?>>();
 
         public ViewHolder(View v) {
             super(v);
@@ -306,10 +323,52 @@ public class WorkflowAdapter extends RecyclerView.Adapter<WorkflowAdapter.ViewHo
             btn_mark_workflow = (Button) v.findViewById(R.id.button_mark_workflow);
             btn_view_workflow = (Button) v.findViewById(R.id.button_view_workflow);
         }
+
+        /**
+         * Cancels the work started for the previous binding and ties this row to the workflow
+         * with the given details uri. Must be called on the main thread.
+         */
+        public void bind(String uri) {
+            unbind();
+            mBoundUri = uri;
+        }
+
+        /**
+         * Cancels the author lookup and avatar load of this row. Must be called on the main thread.
+         */
+        public void unbind() {
+            mBoundUri = null;
+            for (AsyncTask<?, ?, ?> task : mTasks) {
+                task.cancel(true);
+            }
+            mTasks.clear();
+            Glide.clear(author_profile);
+            author_name.setText(null);
+        }
+
+        /**
+         * @return whether the row still shows the workflow with the given details uri, safe to
+         * call from any thread
+         */
+        public boolean isBoundTo(String uri) {
+            return uri != null && uri.equals(mBoundUri);
+        }
+
+        /**
+         * Registers a task to be cancelled when the row is rebound or recycled. Must be called
+         * on the main thread.
+         */
+        public void track(AsyncTask<?, ?, ?> task) {
+            for (int i = mTasks.size() - 1; i >= 0; i--) {
+                if (mTasks.get(i).getStatus() == AsyncTask.Status.FINISHED) mTasks.remove(i);
+            }
+            mTasks.add(task);
+        }
     }
 
     /**
-     * Loads partially details of a given workflow to retrieve author information
+     * Loads partially details of a given workflow to retrieve author information. Expects the
+     * details uri twice, as the url to fetch and as the binding the result is checked against.
      */
     private class DetailLinkLoader extends AsyncTask<String, Void, Void> {
         ViewHolder mViewHolder;
@@ -322,12 +381,14 @@ public class WorkflowAdapter extends RecyclerView.Adapter<WorkflowAdapter.ViewHo
         protected Void doInBackground(String... strings) {
             URL url = null;
             HttpURLConnection connection = null;
+            if (isCancelled() || !mViewHolder.isBoundTo(strings[1])) return null;
             try {
                 url = new URL(strings[0]); //fetch workflow detail
                 connection = (HttpURLConnection) url.openConnection();
                 connection.setDoInput(true);
                 connection.connect();
                 InputStream input = connection.getInputStream();
+                if (isCancelled()) return null;
                 IRule avatarRule = new MyExperimentXmlParserRules.UploaderRule(IRule.Type
                         .ATTRIBUTE, "/workflow/uploader", "resource", "uri", "id");
                 IRule uploaderRule = new MyExperimentXmlParserRules.UploaderRule(IRule.Type
@@ -340,6 +401,8 @@ public class WorkflowAdapter extends RecyclerView.Adapter<WorkflowAdapter.ViewHo
                 Log.e(TAG, "doInBackground: ", e);
             } catch (IOException e) {
                 Log.e(TAG, "doInBackground: ", e);
+            } finally {
+                if (connection != null) connection.disconnect();
             }
             return null;
         }
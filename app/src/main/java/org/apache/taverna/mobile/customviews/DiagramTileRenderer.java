@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.customviews;
+
+import com.caverock.androidsvg.SVG;
+
+import org.apache.taverna.mobile.utils.MemoryPressureCoordinator;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Picture;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Rasterises square tiles of an SVG diagram at power of two levels of detail and keeps them in a
+ * cache bounded in bytes. Level 0 is the size of the base bitmap shown by the view, level n is
+ * 2^n times that. Tiles are drawn from a recorded {@link Picture} on a single background thread
+ * and handed back on the main thread. All methods must be called from the main thread.
+ */
+class DiagramTileRenderer implements MemoryPressureCoordinator.TrimmableCache {
+
+    static final int TILE_SIZE = 256;
+
+    private static final String LOG_TAG = DiagramTileRenderer.class.getSimpleName();
+
+    //one shared thread, a Picture must not be drawn from several threads at once
+    private static final Scheduler TILE_SCHEDULER =
+            Schedulers.from(Executors.newSingleThreadExecutor());
+
+    interface OnTileReadyListener {
+        void onTileReady();
+    }
+
+    private final LruCache<String, Bitmap> mTiles;
+
+    private final Map<String, Subscription> mPending = new HashMap<>();
+
+    private final OnTileReadyListener mListener;
+
+    private Picture mPicture;
+
+    private Subscription mPictureSubscription;
+
+    DiagramTileRenderer(int maxBytes, OnTileReadyListener listener) {
+        mListener = listener;
+        mTiles = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap tile) {
+                return tile.getRowBytes() * tile.getHeight();
+            }
+        };
+    }
+
+    /**
+     * Records the SVG into a picture of the given size off the main thread. Passing null drops
+     * the current diagram and all of its tiles.
+     */
+    void setSvg(@Nullable final SVG svg, final int width, final int height) {
+        clear();
+        if (svg == null || width <= 0 || height <= 0) return;
+
+        mPictureSubscription = Observable.create(new Observable.OnSubscribe<Picture>() {
+            @Override
+            public void call(Subscriber<? super Picture> subscriber) {
+                if (subscriber.isUnsubscribed()) return;
+                subscriber.onNext(svg.renderToPicture(width, height));
+                subscriber.onCompleted();
+            }
+        }).subscribeOn(TILE_SCHEDULER)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Picture>() {
+                    @Override
+                    public void call(Picture picture) {
+                        mPicture = picture;
+                        mListener.onTileReady();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(LOG_TAG, "Unable to record diagram", throwable);
+                    }
+                });
+    }
+
+    boolean hasDiagram() {
+        return mPicture != null;
+    }
+
+    @Nullable
+    Bitmap getTile(int level, int column, int row) {
+        return mTiles.get(key(level, column, row));
+    }
+
+    /**
+     * Starts rendering a tile unless it is cached or already on its way.
+     */
+    void requestTile(final int level, final int column, final int row) {
+        final String key = key(level, column, row);
+        if (mPicture == null || mPending.containsKey(key) || mTiles.get(key) != null) return;
+
+        final Picture picture = mPicture;
+        mPending.put(key, Observable.create(new Observable.OnSubscribe<Bitmap>() {
+            @Override
+            public void call(Subscriber<? super Bitmap> subscriber) {
+                if (subscriber.isUnsubscribed()) return;
+                subscriber.onNext(render(picture, level, column, row));
+                subscriber.onCompleted();
+            }
+        }).subscribeOn(TILE_SCHEDULER)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<Bitmap>() {
+                    @Override
+                    public void call(Bitmap tile) {
+                        mPending.remove(key);
+                        mTiles.put(key, tile);
+                        mListener.onTileReady();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        mPending.remove(key);
+                        Log.e(LOG_TAG, "Unable to render tile " + key, throwable);
+                    }
+                }));
+    }
+
+    /**
+     * Cancels every pending tile whose key is not in the given set.
+     */
+    void retainPending(Set<String> keys) {
+        Iterator<Map.Entry<String, Subscription>> iterator = mPending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Subscription> entry = iterator.next();
+            if (!keys.contains(entry.getKey())) {
+                entry.getValue().unsubscribe();
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public long trim(float fraction) {
+        int before = mTiles.size();
+        mTiles.trimToSize((int) (before * (1f - fraction)));
+        return before - mTiles.size();
+    }
+
+    void clear() {
+        if (mPictureSubscription != null) {
+            mPictureSubscription.unsubscribe();
+            mPictureSubscription = null;
+        }
+        for (Subscription subscription : mPending.values()) {
+            subscription.unsubscribe();
+        }
+        mPending.clear();
+        mTiles.evictAll();
+        mPicture = null;
+    }
+
+    static String key(int level, int column, int row) {
+        return level + "/" + column + "/" + row;
+    }
+
+    private static Bitmap render(Picture picture, int level, int column, int row) {
+        //diagrams are drawn on white, so tiles need no alpha channel
+        Bitmap tile = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.RGB_565);
+        tile.eraseColor(Color.WHITE);
+
+        Canvas canvas = new Canvas(tile);
+        canvas.translate(-column * TILE_SIZE, -row * TILE_SIZE);
+        float levelScale = 1 << level;
+        canvas.scale(levelScale, levelScale);
+        picture.draw(canvas);
+        return tile;
+    }
+}
@@ -24,18 +24,35 @@ package org.apache.taverna.mobile.customviews;
  * under the License.
  */
 
+import com.caverock.androidsvg.SVG;
+
+import org.apache.taverna.mobile.TavernaApplication;
+
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.widget.ImageView;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Created by Akah Harvey on 6/29/15.
+ *
+ * Zoomable image view. When an SVG is attached with {@link #setDiagram(SVG)} the drawable is only
+ * the base layer; once zoomed past it, the visible region is drawn from tiles rasterised at the
+ * current level of detail, falling back to the next coarser level while they render.
  */
 public class WorkflowPreviewImageView extends ImageView {
     static final int NONE = 0;
@@ -59,11 +76,32 @@ public class WorkflowPreviewImageView extends ImageView {
     ScaleGestureDetector mScaleDetector;
     Context context;
 
+    //start tiling once the base layer is magnified by more than this
+    private static final float TILE_MIN_SCALE = 1.25f;
+    private static final int MAX_TILE_LEVEL = 3;
+    private static final int TILE_CACHE_DIVIDER = 16;
+
+    private final float[] mDrawValues = new float[9];
+    private final RectF mTileRect = new RectF();
+    private final Rect mParentRect = new Rect();
+    private final Set<String> mVisibleTiles = new HashSet<>();
+    private final Paint mTilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private DiagramTileRenderer mTileRenderer;
+    private SVG mDiagram;
+
     public WorkflowPreviewImageView(Context context, AttributeSet attr) {
         super(context, attr);
         super.setClickable(true);
         this.context = context;
         mScaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+        mTileRenderer = new DiagramTileRenderer(
+                (int) (Runtime.getRuntime().maxMemory() / TILE_CACHE_DIVIDER),
+                new DiagramTileRenderer.OnTileReadyListener() {
+                    @Override
+                    public void onTileReady() {
+                        invalidate();
+                    }
+                });
         matrix.setTranslate(1f, 1f);
         m = new float[9];
         setImageMatrix(matrix);
@@ -87,6 +125,8 @@ public class WorkflowPreviewImageView extends ImageView {
                         last.set(event.getX(), event.getY());
                         start.set(last);
                         mode = DRAG;
+                        //keep a scrolling parent from stealing the pan once zoomed
+                        getParent().requestDisallowInterceptTouchEvent(saveScale > minScale);
                         break;
                     //when two fingers are touching
                     //set the mode to ZOOM
@@ -94,6 +134,7 @@ public class WorkflowPreviewImageView extends ImageView {
                         last.set(event.getX(), event.getY());
                         start.set(last);
                         mode = ZOOM;
+                        getParent().requestDisallowInterceptTouchEvent(true);
                         break;
                     //when a finger moves
                     //If mode is applicable move image
@@ -169,21 +210,62 @@ public class WorkflowPreviewImageView extends ImageView {
     }
 
     @Override
-    public void setImageBitmap(Bitmap bm) {
-        super.setImageBitmap(bm);
-        bmWidth = bm.getWidth();
-        bmHeight = bm.getHeight();
+    public void setImageDrawable(Drawable drawable) {
+        super.setImageDrawable(drawable);
+        float oldWidth = bmWidth;
+        float oldHeight = bmHeight;
+        bmWidth = drawable == null ? 0 : drawable.getIntrinsicWidth();
+        bmHeight = drawable == null ? 0 : drawable.getIntrinsicHeight();
+
+        //called from the ImageView constructor before the renderer exists
+        if (mTileRenderer != null && (oldWidth != bmWidth || oldHeight != bmHeight)) {
+            mTileRenderer.setSvg(mDiagram, (int) bmWidth, (int) bmHeight);
+        }
+    }
+
+    /**
+     * Attaches the SVG the current drawable was rasterised from, so zoomed in regions can be
+     * rendered sharply. Pass null when a different image is about to be shown.
+     */
+    public void setDiagram(@Nullable SVG diagram) {
+        mDiagram = diagram;
+        mTileRenderer.setSvg(diagram, (int) bmWidth, (int) bmHeight);
+        invalidate();
     }
 
     public void setMaxZoom(float x) {
         maxScale = x;
     }
 
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        drawTiles(canvas);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        TavernaApplication.getMemoryPressureCoordinator().unregister(mTileRenderer);
+        mTileRenderer.clear();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        TavernaApplication.getMemoryPressureCoordinator().register("Diagram tiles",
+                mTileRenderer);
+        if (mDiagram != null && !mTileRenderer.hasDiagram()) {
+            mTileRenderer.setSvg(mDiagram, (int) bmWidth, (int) bmHeight);
+        }
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         width = MeasureSpec.getSize(widthMeasureSpec);
         height = MeasureSpec.getSize(heightMeasureSpec);
+        if (bmWidth <= 0 || bmHeight <= 0) return;
         //Fit to screen.
         float scale;
         float scaleX = width / bmWidth;
@@ -208,6 +290,66 @@ public class WorkflowPreviewImageView extends ImageView {
         setImageMatrix(matrix);
     }
 
+    private void drawTiles(Canvas canvas) {
+        if (!mTileRenderer.hasDiagram() || bmWidth <= 0 || bmHeight <= 0) return;
+
+        matrix.getValues(mDrawValues);
+        float scale = mDrawValues[Matrix.MSCALE_X];
+        mVisibleTiles.clear();
+        if (scale <= TILE_MIN_SCALE) {
+            mTileRenderer.retainPending(mVisibleTiles);
+            return;
+        }
+
+        int level = Math.min(MAX_TILE_LEVEL, (int) Math.ceil(Math.log(scale) / Math.log(2)));
+        int tileSize = DiagramTileRenderer.TILE_SIZE;
+        float tileOnScreen = tileSize * scale / (1 << level);
+        float left = mDrawValues[Matrix.MTRANS_X];
+        float top = mDrawValues[Matrix.MTRANS_Y];
+        int columns = (int) Math.ceil(bmWidth * (1 << level) / tileSize);
+        int rows = (int) Math.ceil(bmHeight * (1 << level) / tileSize);
+        int viewWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        int viewHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+
+        int firstColumn = Math.max(0, (int) Math.floor(-left / tileOnScreen));
+        int lastColumn = Math.min(columns - 1, (int) Math.floor((viewWidth - left) / tileOnScreen));
+        int firstRow = Math.max(0, (int) Math.floor(-top / tileOnScreen));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((viewHeight - top) / tileOnScreen));
+
+        int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        canvas.clipRect(0, 0, viewWidth, viewHeight);
+        canvas.clipRect(left, top, left + bmWidth * scale, top + bmHeight * scale);
+
+        int half = tileSize / 2;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                mVisibleTiles.add(DiagramTileRenderer.key(level, column, row));
+                mTileRect.set(left + column * tileOnScreen, top + row * tileOnScreen,
+                        left + (column + 1) * tileOnScreen, top + (row + 1) * tileOnScreen);
+
+                Bitmap tile = mTileRenderer.getTile(level, column, row);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, null, mTileRect, mTilePaint);
+                    continue;
+                }
+                mTileRenderer.requestTile(level, column, row);
+
+                //until it is ready show the matching quarter of the coarser tile, if any
+                Bitmap parent = level > 1
+                        ? mTileRenderer.getTile(level - 1, column / 2, row / 2) : null;
+                if (parent != null) {
+                    mParentRect.set(column % 2 * half, row % 2 * half,
+                            column % 2 * half + half, row % 2 * half + half);
+                    canvas.drawBitmap(parent, mParentRect, mTileRect, mTilePaint);
+                }
+            }
+        }
+        canvas.restoreToCount(saveCount);
+
+        mTileRenderer.retainPending(mVisibleTiles);
+    }
+
     private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
 
         @Override
@@ -0,0 +1,438 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data;
+
+import org.apache.taverna.mobile.data.local.DBHelper;
+import org.apache.taverna.mobile.data.model.Workflow;
+import org.apache.taverna.mobile.data.model.Workflows;
+import org.apache.taverna.mobile.data.remote.APIEndPoint;
+import org.apache.taverna.mobile.data.remote.BaseApiManager;
+import org.apache.taverna.mobile.data.remote.TavernaOkHttpClient;
+import org.simpleframework.xml.Serializer;
+import org.simpleframework.xml.core.Persister;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import rx.Observable;
+import rx.Observer;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Mirrors the whole myExperiment workflow catalogue into the local database. Downloading, parsing
+ * and writing run as three stages connected by small bounded queues, so page N+1 is downloaded
+ * while page N is parsed and page N-1 is written. Each stage has a dedicated background thread,
+ * which keeps the shared task pools free for everything else. Every written page is
+ * checkpointed, and an interrupted mirror resumes from the first page not yet written.
+ * While the mirror is enabled {@link org.apache.taverna.mobile.data.local.WorkflowCacheEvictor}
+ * leaves the workflow table alone.
+ */
+public class CatalogueMirror {
+
+    public static final String PREF_ENABLED = "pref_catalogue_mirror";
+
+    public static final String PREF_NEXT_PAGE = "pref_catalogue_mirror_next_page";
+
+    public static final String PREF_COMPLETED_AT = "pref_catalogue_mirror_completed_at";
+
+    private static final String LOG_TAG = CatalogueMirror.class.getSimpleName();
+
+    //largest page myExperiment serves
+    private static final int PAGE_SIZE = 100;
+
+    //pages buffered between two stages, enough to hide the jitter of a single request
+    private static final int QUEUE_CAPACITY = 2;
+
+    private static final long POLL_MILLIS = 250;
+
+    private static final String ELEMENTS = "title,type,uploader,preview,svg,created-at,"
+            + "updated-at,description,license-type,content-uri,content-type";
+
+    /**
+     * Snapshot of a running mirror, emitted after every written page.
+     */
+    public static class Progress {
+
+        private final int mPage;
+
+        private final int mWorkflows;
+
+        private final float mWorkflowsPerSecond;
+
+        Progress(int page, int workflows, float workflowsPerSecond) {
+            mPage = page;
+            mWorkflows = workflows;
+            mWorkflowsPerSecond = workflowsPerSecond;
+        }
+
+        /**
+         * @return the page written last
+         */
+        public int getPage() {
+            return mPage;
+        }
+
+        /**
+         * @return workflows written since this run started
+         */
+        public int getWorkflows() {
+            return mWorkflows;
+        }
+
+        public float getWorkflowsPerSecond() {
+            return mWorkflowsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return "page " + mPage + ", " + mWorkflows + " workflows, "
+                    + String.format("%.1f", mWorkflowsPerSecond) + " workflows/s";
+        }
+    }
+
+    private final SharedPreferences mPreferences;
+
+    private final DBHelper mDBHelper;
+
+    private final OkHttpClient mOkHttpClient;
+
+    private final AtomicBoolean mRunning = new AtomicBoolean(false);
+
+    private Subscription mSubscription;
+
+    public CatalogueMirror(Context context, DBHelper dbHelper) {
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+        mDBHelper = dbHelper;
+        mOkHttpClient = new TavernaOkHttpClient().getBulkOkHttpClient();
+    }
+
+    public boolean isEnabled() {
+        return mPreferences.getBoolean(PREF_ENABLED, false);
+    }
+
+    /**
+     * @return whether a mirror was started and has not reached the last page yet
+     */
+    public boolean isIncomplete() {
+        return mPreferences.contains(PREF_NEXT_PAGE);
+    }
+
+    /**
+     * Starts or resumes mirroring in the background unless it is already running.
+     */
+    public synchronized void start() {
+        if (!mRunning.compareAndSet(false, true)) return;
+
+        mSubscription = mirror().subscribe(new Observer<Progress>() {
+            @Override
+            public void onCompleted() {
+                mRunning.set(false);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                mRunning.set(false);
+                Log.e(LOG_TAG, "Catalogue mirror stopped, it resumes from page "
+                        + mPreferences.getInt(PREF_NEXT_PAGE, 1), e);
+            }
+
+            @Override
+            public void onNext(Progress progress) {
+                Log.d(LOG_TAG, progress.toString());
+            }
+        });
+    }
+
+    /**
+     * Stops a running mirror, the next start resumes from the last checkpoint.
+     */
+    public synchronized void stop() {
+        if (mSubscription != null) {
+            mSubscription.unsubscribe();
+            mSubscription = null;
+        }
+        mRunning.set(false);
+    }
+
+    /**
+     * Mirrors the catalogue starting at the checkpointed page. Emits on the write thread, completes
+     * after the last page has been written, and unsubscribing stops all three stages.
+     */
+    public Observable<Progress> mirror() {
+        return Observable.create(new Observable.OnSubscribe<Progress>() {
+            @Override
+            public void call(Subscriber<? super Progress> subscriber) {
+                if (subscriber.isUnsubscribed()) return;
+                final Pipeline pipeline =
+                        new Pipeline(subscriber, mPreferences.getInt(PREF_NEXT_PAGE, 1));
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        pipeline.cancel();
+                    }
+                }));
+                pipeline.start();
+            }
+        });
+    }
+
+    private static class Page {
+
+        final int number;
+
+        final byte[] body;
+
+        final List<Workflow> workflows;
+
+        Page(int number, byte[] body, List<Workflow> workflows) {
+            this.number = number;
+            this.body = body;
+            this.workflows = workflows;
+        }
+    }
+
+    private class Pipeline {
+
+        //handed from the parser to the writer after the last page
+        private final Page mEnd = new Page(-1, null, null);
+
+        private final BlockingQueue<Page> mDownloaded = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        private final BlockingQueue<Page> mParsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        private final Serializer mSerializer = new Persister();
+
+        private final Subscriber<? super Progress> mSubscriber;
+
+        private final int mFirstPage;
+
+        private final AtomicBoolean mCancelled = new AtomicBoolean(false);
+
+        private final AtomicReference<Throwable> mError = new AtomicReference<>();
+
+        //set by the parser once it has seen a short or empty page
+        private volatile boolean mEndReached;
+
+        private long mStartedAt;
+
+        private int mWritten;
+
+        Pipeline(Subscriber<? super Progress> subscriber, int firstPage) {
+            mSubscriber = subscriber;
+            mFirstPage = firstPage;
+        }
+
+        void start() {
+            mStartedAt = System.currentTimeMillis();
+            //marks the mirror as incomplete until the last page is written
+            mPreferences.edit().putInt(PREF_NEXT_PAGE, mFirstPage).apply();
+            Log.d(LOG_TAG, "Mirroring catalogue from page " + mFirstPage);
+
+            startStage("download", new Runnable() {
+                @Override
+                public void run() {
+                    download();
+                }
+            });
+            startStage("parse", new Runnable() {
+                @Override
+                public void run() {
+                    parse();
+                }
+            });
+            startStage("write", new Runnable() {
+                @Override
+                public void run() {
+                    write();
+                }
+            });
+        }
+
+        private void startStage(String name, final Runnable stage) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    stage.run();
+                }
+            }, "CatalogueMirror-" + name);
+            thread.start();
+        }
+
+        void cancel() {
+            mCancelled.set(true);
+        }
+
+        private void fail(Throwable throwable) {
+            mError.compareAndSet(null, throwable);
+            mCancelled.set(true);
+        }
+
+        private void download() {
+            int number = mFirstPage;
+            try {
+                while (!mCancelled.get() && !mEndReached) {
+                    byte[] body = fetch(number);
+                    if (!put(mDownloaded, new Page(number, body, null), true)) return;
+                    number++;
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void parse() {
+            try {
+                Page page;
+                while ((page = take(mDownloaded)) != null) {
+                    List<Workflow> workflows = mSerializer.read(Workflows.class,
+                            new ByteArrayInputStream(page.body)).getWorkflowList();
+
+                    if (workflows != null && !workflows.isEmpty()
+                            && !put(mParsed, new Page(page.number, null, workflows), false)) {
+                        return;
+                    }
+                    if (workflows == null || workflows.size() < PAGE_SIZE) {
+                        mEndReached = true;
+                        put(mParsed, mEnd, false);
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        private void write() {
+            try {
+                Page page;
+                while ((page = take(mParsed)) != null) {
+                    if (page == mEnd) {
+                        finish();
+                        return;
+                    }
+
+                    mDBHelper.saveWorkflows(page.workflows);
+                    mPreferences.edit().putInt(PREF_NEXT_PAGE, page.number + 1).apply();
+                    mWritten += page.workflows.size();
+
+                    if (!mSubscriber.isUnsubscribed()) {
+                        mSubscriber.onNext(new Progress(page.number, mWritten,
+                                workflowsPerSecond()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+
+            Throwable error = mError.get();
+            if (error != null && !mSubscriber.isUnsubscribed()) {
+                mSubscriber.onError(error);
+            }
+        }
+
+        private void finish() {
+            mPreferences.edit()
+                    .remove(PREF_NEXT_PAGE)
+                    .putLong(PREF_COMPLETED_AT, System.currentTimeMillis())
+                    .apply();
+            Log.d(LOG_TAG, "Mirrored " + mWritten + " workflows in "
+                    + (System.currentTimeMillis() - mStartedAt) / 1000 + "s, "
+                    + String.format("%.1f", workflowsPerSecond()) + " workflows/s");
+            if (!mSubscriber.isUnsubscribed()) mSubscriber.onCompleted();
+        }
+
+        private float workflowsPerSecond() {
+            long elapsed = Math.max(1, System.currentTimeMillis() - mStartedAt);
+            return mWritten * 1000f / elapsed;
+        }
+
+        private byte[] fetch(int number) throws IOException {
+            HttpUrl url = HttpUrl.parse(BaseApiManager.END_POINT).newBuilder()
+                    .addPathSegment(APIEndPoint.ALL_WORKFLOW)
+                    .addQueryParameter("elements", ELEMENTS)
+                    .addQueryParameter("num", String.valueOf(PAGE_SIZE))
+                    .addQueryParameter("page", String.valueOf(number))
+                    .build();
+
+            Response response = mOkHttpClient.newCall(new Request.Builder().url(url).build())
+                    .execute();
+            try {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Unexpected response " + response.code() + " for "
+                            + url);
+                }
+                return response.body().bytes();
+            } finally {
+                response.body().close();
+            }
+        }
+
+        /**
+         * Blocks until the queue has room. Gives up once the pipeline is cancelled, or, for
+         * the downloader, once the parser has seen the last page.
+         */
+        private boolean put(BlockingQueue<Page> queue, Page page, boolean untilEnd) {
+            try {
+                while (!mCancelled.get() && !(untilEnd && mEndReached)) {
+                    if (queue.offer(page, POLL_MILLIS, TimeUnit.MILLISECONDS)) return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            }
+            return false;
+        }
+
+        /**
+         * @return the next page, or null once the pipeline is cancelled
+         */
+        private Page take(BlockingQueue<Page> queue) {
+            try {
+                while (!mCancelled.get()) {
+                    Page page = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (page != null) return page;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            }
+            return null;
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.taverna.mobile.data;
 
+import org.apache.taverna.mobile.TavernaApplication;
 import org.apache.taverna.mobile.data.local.DBHelper;
 import org.apache.taverna.mobile.data.model.Announcements;
 import org.apache.taverna.mobile.data.model.DetailAnnouncement;
@@ -27,15 +28,24 @@ import org.apache.taverna.mobile.data.model.User;
 import org.apache.taverna.mobile.data.model.Workflows;
 import org.apache.taverna.mobile.data.remote.BaseApiManager;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.functions.Action0;
 import rx.functions.Func1;
 
 
 public class DataManager {
 
+    //how long an uploader's avatar url is trusted before user.xml is fetched again
+    private static final long USER_AVATAR_MAX_AGE = TimeUnit.DAYS.toMillis(7);
+
+    private static final Map<String, String> USER_AVATAR_OPTIONS =
+            Collections.singletonMap("elements", "avatar");
+
     public BaseApiManager mBaseApiManager = new BaseApiManager();
 
     public DBHelper mDBHelper = new DBHelper();
@@ -67,6 +77,12 @@ public class DataManager {
                     public Observable<? extends Workflows> call(Workflows workflows) {
                         return mDBHelper.syncWorkflows(workflows);
                     }
+                })
+                .doOnCompleted(new Action0() {
+                    @Override
+                    public void call() {
+                        TavernaApplication.getWorkflowCacheEvictor().schedule();
+                    }
                 });
     }
 
@@ -92,6 +108,25 @@ public class DataManager {
         return mBaseApiManager.getTavernaApi().getUserDetail(id, options);
     }
 
+    /**
+     * @return Avatar url of a user, from the database while it is fresh and from myExperiment
+     * otherwise
+     */
+
+    public Observable<String> getUserAvatarUrl(final String userId) {
+        return Observable.concat(mDBHelper.getUserAvatarUrl(userId, USER_AVATAR_MAX_AGE),
+                getUserDetail(userId, USER_AVATAR_OPTIONS)
+                        .concatMap(new Func1<User, Observable<String>>() {
+                            @Override
+                            public Observable<String> call(User user) {
+                                return mDBHelper.saveUserAvatarUrl(userId,
+                                        user.getAvatar() == null
+                                                ? null : user.getAvatar().getResource());
+                            }
+                        }))
+                .first();
+    }
+
     /**
      * @return Detail of  Licence
      */
@@ -116,6 +151,14 @@ public class DataManager {
         return mDBHelper.getFavouriteWorkflow(id);
     }
 
+    /**
+     * @return Is Workflow Favourite or not, read from memory so it is safe on the main thread
+     */
+
+    public boolean isFavouriteWorkflow(String id) {
+        return TavernaApplication.getFavouriteWorkflowIds().contains(id);
+    }
+
     /**
      * @return Favourite Workflow list
      */
@@ -132,4 +175,4 @@ public class DataManager {
     public Observable<Workflow> getFavoriteDetailWorkflow(String id) {
         return mDBHelper.getFavouriteWorkflowDetail(id);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.model.RunFramework;
+import org.apache.taverna.mobile.utils.PriorityExecutor.Priority;
+import org.apache.taverna.mobile.utils.TaskExecutors;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import retrofit2.Response;
+
+/**
+ * Keeps the run frameworks ({@code runs/new?workflow_id=}) of Player workflows on disk, keyed by
+ * Player url, workflow id and workflow version, so the input form of a repeat run can be shown
+ * without waiting for the Player. A cached framework is only used if it still describes the
+ * workflow it was stored for, and it is revalidated in the background with the ETag it came
+ * with, so a framework the Player changed without a new workflow version is picked up by the
+ * next run.
+ */
+public class RunFrameworkCache {
+
+    private static final String LOG_TAG = RunFrameworkCache.class.getSimpleName();
+
+    private static final String DIRECTORY = "run_frameworks";
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * What is stored per framework.
+     */
+    private static class Entry {
+
+        String key;
+
+        String etag;
+
+        RunFramework framework;
+    }
+
+    private final Gson mGson;
+
+    private final File mDirectory;
+
+    public RunFrameworkCache(Context context) {
+        mGson = TavernaApplication.getPlayerApiManager().getGson();
+        mDirectory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+    }
+
+    /**
+     * Returns the run framework of a Player workflow, from disk if a valid copy of that version
+     * is stored and from the Player otherwise. Blocks, call it off the main thread.
+     *
+     * @param version {@code updated_at} of the Player workflow, or null if not known
+     */
+    public RunFramework get(final String workflowId, @Nullable String version)
+            throws IOException {
+        final String key = TavernaApplication.getPlayerApiManager().getConfig()
+                .getRunFrameworkUrl(workflowId) + " " + version;
+        final File file = fileFor(key);
+
+        final Entry entry = read(file, key);
+        if (entry != null && isFrameworkOf(entry.framework, workflowId)) {
+            TaskExecutors.network(Priority.LOW).execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        fetch(workflowId, key, file, entry.etag);
+                    } catch (IOException e) {
+                        Log.w(LOG_TAG, "Unable to revalidate " + key, e);
+                    }
+                }
+            });
+            return entry.framework;
+        }
+        return fetch(workflowId, key, file, null);
+    }
+
+    /**
+     * @return the framework, or null if etag was given and still matches
+     */
+    private RunFramework fetch(String workflowId, String key, File file, @Nullable String etag)
+            throws IOException {
+        Response<RunFramework> response = TavernaApplication.getPlayerApiManager()
+                .getPlayerService().getRunFramework(workflowId, etag).execute();
+        if (etag != null && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            file.setLastModified(System.currentTimeMillis());
+            return null;
+        }
+        if (!response.isSuccessful()) {
+            throw new IOException("Unexpected response " + response.code() + " for " + key);
+        }
+
+        RunFramework framework = response.body();
+        if (isFrameworkOf(framework, workflowId)) {
+            Entry entry = new Entry();
+            entry.key = key;
+            entry.etag = response.headers().get("ETag");
+            entry.framework = framework;
+            try {
+                write(file, entry);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Unable to cache " + key, e);
+            }
+        } else {
+            //not worth keeping, but the caller decides what to make of it
+            file.delete();
+        }
+        return framework;
+    }
+
+    //a framework has the run inputs and, if the Player says so, belongs to the workflow
+    private static boolean isFrameworkOf(@Nullable RunFramework framework, String workflowId) {
+        if (framework == null || framework.getRun() == null
+                || framework.getRun().getInputs() == null) {
+            return false;
+        }
+        long id = framework.getRun().getWorkflowId();
+        return id == 0 || workflowId.equals(String.valueOf(id));
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory, Integer.toHexString(key.hashCode()) + ".json");
+    }
+
+    @Nullable
+    private Entry read(File file, String key) {
+        if (!file.exists()) return null;
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            InputStream in = new FileInputStream(file);
+            try {
+                int read = 0;
+                int count;
+                while (read < bytes.length
+                        && (count = in.read(bytes, read, bytes.length - read)) != -1) {
+                    read += count;
+                }
+            } finally {
+                in.close();
+            }
+            Entry entry = mGson.fromJson(new String(bytes, UTF_8), Entry.class);
+            //two keys may share a file name, the stored key tells them apart
+            return entry != null && key.equals(entry.key) ? entry : null;
+        } catch (IOException | JsonParseException e) {
+            Log.w(LOG_TAG, "Dropping unreadable " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private synchronized void write(File file, Entry entry) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(mGson.toJson(entry).getBytes(UTF_8));
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to write " + file);
+        }
+        trim();
+    }
+
+    //drops the least recently used frameworks beyond MAX_ENTRIES
+    private void trim() {
+        File[] files = mDirectory.listFiles();
+        if (files == null || files.length <= MAX_ENTRIES) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long difference = rhs.lastModified() - lhs.lastModified();
+                return difference > 0 ? 1 : difference < 0 ? -1 : 0;
+            }
+        });
+        for (int i = MAX_ENTRIES; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+}
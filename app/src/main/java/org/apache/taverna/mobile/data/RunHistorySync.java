@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data;
+
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.local.DBHelper;
+import org.apache.taverna.mobile.data.model.PlayerRun;
+import org.apache.taverna.mobile.data.model.Run;
+import org.apache.taverna.mobile.data.remote.PlayerConfig;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit2.Response;
+import retrofit2.adapter.rxjava.HttpException;
+import rx.Observable;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Brings the Run table up to date with the run listing of the configured Taverna Player. The
+ * Player has no query for runs changed since a point in time, so the listing is requested
+ * conditionally with the ETag of the last one. An unchanged listing costs a 304 without a body,
+ * and a changed one only writes the runs that are new, changed or gone.
+ */
+public class RunHistorySync {
+
+    private static final String PREF_ETAG = "pref_run_history_etag";
+
+    //url and user the stored ETag was returned for
+    private static final String PREF_ETAG_SOURCE = "pref_run_history_etag_source";
+
+    private final SharedPreferences mPreferences;
+
+    private final DBHelper mDBHelper;
+
+    public RunHistorySync(Context context, DBHelper dbHelper) {
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(
+                context.getApplicationContext());
+        mDBHelper = dbHelper;
+    }
+
+    /**
+     * @return number of runs inserted, updated or deleted, 0 when the listing is unchanged
+     */
+    public Observable<Integer> sync() {
+        return Observable.defer(new Func0<Observable<Integer>>() {
+            @Override
+            public Observable<Integer> call() {
+                return syncListing();
+            }
+        });
+    }
+
+    private Observable<Integer> syncListing() {
+        PlayerConfig config = TavernaApplication.getPlayerApiManager().getConfig();
+        final String source = config.getRunsUrl() + " " + config.getUser();
+        String etag = mPreferences.getString(PREF_ETAG, null);
+        if (!source.equals(mPreferences.getString(PREF_ETAG_SOURCE, null))) {
+            etag = null;
+        }
+
+        return TavernaApplication.getPlayerApiManager().getPlayerService().getRuns(etag)
+                .flatMap(new Func1<Response<List<PlayerRun>>, Observable<Integer>>() {
+                    @Override
+                    public Observable<Integer> call(Response<List<PlayerRun>> response) {
+                        if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                            return Observable.just(0);
+                        }
+                        if (!response.isSuccessful()) {
+                            return Observable.error(new HttpException(response));
+                        }
+
+                        int changed = mDBHelper.syncRuns(toRuns(response.body()));
+                        //stored only after the listing is written, so a failed write is
+                        //retried in full
+                        mPreferences.edit()
+                                .putString(PREF_ETAG, response.headers().get("ETag"))
+                                .putString(PREF_ETAG_SOURCE, source)
+                                .apply();
+                        return Observable.just(changed);
+                    }
+                });
+    }
+
+    private static List<Run> toRuns(List<PlayerRun> playerRuns) {
+        List<Run> runs = new ArrayList<>(playerRuns.size());
+        for (PlayerRun playerRun : playerRuns) {
+            Run run = new Run();
+            run.setId(playerRun.getId());
+            run.setWorkflowId(playerRun.getWorkflowId());
+            run.setName(playerRun.getName());
+            run.setState(playerRun.getState());
+            run.setStartTime(playerRun.getStartTime());
+            run.setFinishTime(playerRun.getFinishTime());
+            run.setAuthor(playerRun.getUser() != null ? playerRun.getUser().getName() : null);
+            runs.add(run);
+        }
+        return runs;
+    }
+}
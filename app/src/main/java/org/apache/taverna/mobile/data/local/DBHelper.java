@@ -19,15 +19,26 @@
 package org.apache.taverna.mobile.data.local;
 
 
+import com.raizlabs.android.dbflow.config.FlowManager;
 import com.raizlabs.android.dbflow.sql.language.SQLite;
+import com.raizlabs.android.dbflow.structure.database.DatabaseWrapper;
 
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.model.Run;
+import org.apache.taverna.mobile.data.model.Run_Table;
+import org.apache.taverna.mobile.data.model.UserAvatar;
+import org.apache.taverna.mobile.data.model.UserAvatar_Table;
 import org.apache.taverna.mobile.data.model.Workflow;
 import org.apache.taverna.mobile.data.model.Workflow_Table;
 import org.apache.taverna.mobile.data.model.Workflows;
 
 import android.support.annotation.Nullable;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import rx.Observable;
 import rx.Subscriber;
@@ -36,9 +47,10 @@ import rx.functions.Func0;
 
 public class DBHelper {
 
+    private final WorkflowModelCache mWorkflowModelCache;
 
     public DBHelper() {
-
+        mWorkflowModelCache = TavernaApplication.getWorkflowModelCache();
     }
 
     @Nullable
@@ -47,29 +59,50 @@ public class DBHelper {
             @Override
             public void call(Subscriber<? super Workflows> subscriber) {
                 if (subscriber.isUnsubscribed()) return;
-                for (Workflow workflow : workflows.getWorkflowList()) {
-                    if (!workflow.exists()) {
-                        workflow.setFavourite(false);
-                        workflow.save();
+                saveWorkflows(workflows.getWorkflowList());
+                subscriber.onNext(workflows);
+                subscriber.onCompleted();
+            }
+        });
+    }
 
-                    } else {
+    /**
+     * Inserts or updates a page of workflows in a single transaction. Blocks, so it must not be
+     * called on the main thread.
+     */
+    public void saveWorkflows(List<Workflow> workflows) {
+        if (workflows == null) return;
+
+        DatabaseWrapper database = FlowManager.getDatabase(TavernaDatabase.class)
+                .getWritableDatabase();
+        long now = System.currentTimeMillis();
+        database.beginTransaction();
+        try {
+            for (Workflow workflow : workflows) {
+                workflow.setLastAccessed(now);
+                if (!mWorkflowModelCache.exists(workflow.getId())) {
+                    workflow.setFavourite(false);
+                    workflow.save();
 
-                        updateWorkflow(workflow).save();
-                    }
+                } else {
 
+                    updateWorkflow(workflow).save();
                 }
-                subscriber.onNext(workflows);
-                subscriber.onCompleted();
             }
-        });
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        for (Workflow workflow : workflows) {
+            mWorkflowModelCache.invalidate(workflow.getId());
+        }
     }
 
     private Workflow updateWorkflow(Workflow workflow) {
 
-        Workflow workflow1 = SQLite.select()
-                .from(Workflow.class)
-                .where(Workflow_Table.id.eq(workflow.getId()))
-                .querySingle();
+        //a copy, the cached instance may be read by the screens at the same time
+        Workflow workflow1 = mWorkflowModelCache.load(workflow.getId());
 
         if (workflow1 != null) {
             if (workflow.getDescription() != null) {
@@ -110,6 +143,7 @@ public class DBHelper {
             workflow1.setUri(workflow.getUri());
             workflow1.setId(workflow.getId());
             workflow1.setVersion(workflow.getVersion());
+            workflow1.setLastAccessed(workflow.getLastAccessed());
 
         }
         return workflow1;
@@ -121,13 +155,15 @@ public class DBHelper {
             @Override
             public void call(Subscriber<? super Workflow> subscriber) {
                 if (subscriber.isUnsubscribed()) return;
-                if (!workflow.exists()) {
+                workflow.setLastAccessed(System.currentTimeMillis());
+                if (!mWorkflowModelCache.exists(workflow.getId())) {
                     workflow.save();
 
                 } else {
 
                     updateWorkflow(workflow).save();
                 }
+                mWorkflowModelCache.invalidate(workflow.getId());
                 subscriber.onNext(workflow);
                 subscriber.onCompleted();
             }
@@ -152,35 +188,23 @@ public class DBHelper {
             @Override
             public void call(Subscriber<? super Boolean> subscriber) {
                 if (subscriber.isUnsubscribed()) return;
-                Workflow workflow1 = SQLite.select()
-                        .from(Workflow.class)
-                        .where(Workflow_Table.id.eq(id))
-                        .querySingle();
-
-                if (workflow1 != null) {
-
-                    subscriber.onNext(workflow1.isFavourite());
-                    subscriber.onCompleted();
-                } else {
-
-                    subscriber.onError(null);
-                }
-
-
+                subscriber.onNext(TavernaApplication.getFavouriteWorkflowIds()
+                        .awaitContains(id));
+                subscriber.onCompleted();
             }
         });
     }
 
     public boolean updateFavouriteWorkflow(String id) {
 
-        Workflow workflow1 = SQLite.select()
-                .from(Workflow.class)
-                .where(Workflow_Table.id.eq(id))
-                .querySingle();
+        Workflow workflow1 = mWorkflowModelCache.load(id);
 
         if (workflow1 != null) {
             workflow1.setFavourite(!workflow1.isFavourite());
             workflow1.save();
+            mWorkflowModelCache.invalidate(id);
+            TavernaApplication.getFavouriteWorkflowIds()
+                    .set(workflow1.getId(), workflow1.isFavourite());
             return true;
         }
 
@@ -209,14 +233,97 @@ public class DBHelper {
         return Observable.defer(new Func0<Observable<Workflow>>() {
             @Override
             public Observable<Workflow> call() {
-                return Observable
-                        .just(SQLite.select()
-                                .from(Workflow.class)
-                                .where(Workflow_Table.id.eq(id))
-                                .querySingle());
+                return Observable.just(mWorkflowModelCache.get(id));
+            }
+        });
+
+    }
+
+    /**
+     * Emits the stored avatar url of a user, or completes without emitting when there is none or
+     * it is older than maxAge milliseconds.
+     */
+    public Observable<String> getUserAvatarUrl(final String userId, final long maxAge) {
+        return Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                UserAvatar userAvatar = SQLite.select()
+                        .from(UserAvatar.class)
+                        .where(UserAvatar_Table.userId.eq(userId))
+                        .querySingle();
+
+                if (userAvatar == null
+                        || System.currentTimeMillis() - userAvatar.getFetchedAt() > maxAge) {
+                    return Observable.empty();
+                }
+                return Observable.just(userAvatar.getAvatarUrl());
+            }
+        });
+    }
+
+    /**
+     * Emits the stored runs of the workflow with the given title, newest first.
+     */
+    public Observable<List<Run>> getRuns(final String workflowTitle) {
+        return Observable.defer(new Func0<Observable<List<Run>>>() {
+            @Override
+            public Observable<List<Run>> call() {
+                return Observable.just(SQLite.select()
+                        .from(Run.class)
+                        .where(Run_Table.workflowKey.eq(Run.workflowKey(workflowTitle)))
+                        .orderBy(Run_Table.id, false)
+                        .queryList());
             }
         });
+    }
+
+    /**
+     * Makes the Run table match a full run listing in one transaction. Only runs that are new or
+     * whose content changed are written, and runs missing from the listing are deleted. Blocks,
+     * so it must not be called on the main thread.
+     *
+     * @return number of runs inserted, updated or deleted
+     */
+    public int syncRuns(List<Run> runs) {
+        Map<Long, Run> stored = new HashMap<>();
+        for (Run run : SQLite.select().from(Run.class).queryList()) {
+            stored.put(run.getId(), run);
+        }
 
+        DatabaseWrapper database = FlowManager.getDatabase(TavernaDatabase.class)
+                .getWritableDatabase();
+        int changed = 0;
+        Set<Long> listed = new HashSet<>();
+        database.beginTransaction();
+        try {
+            for (Run run : runs) {
+                listed.add(run.getId());
+                if (!run.sameAs(stored.get(run.getId()))) {
+                    run.save();
+                    changed++;
+                }
+            }
+            for (Run run : stored.values()) {
+                if (!listed.contains(run.getId())) {
+                    run.delete();
+                    changed++;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return changed;
+    }
+
+    public Observable<String> saveUserAvatarUrl(final String userId, final String avatarUrl) {
+        return Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                new UserAvatar(userId, avatarUrl, System.currentTimeMillis()).save();
+                return Observable.just(avatarUrl);
+            }
+        });
     }
 
 
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.local;
+
+import com.raizlabs.android.dbflow.sql.language.SQLite;
+
+import org.apache.taverna.mobile.data.model.Workflow;
+import org.apache.taverna.mobile.data.model.Workflow_Table;
+
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Application wide set of favourite workflow ids. It is filled once from the indexed favourite
+ * column and then kept in step by {@link DBHelper} on every favourite write, so favourite state
+ * can be read from any thread without touching SQLite.
+ */
+public class FavouriteWorkflowIds {
+
+    private static final String LOG_TAG = FavouriteWorkflowIds.class.getSimpleName();
+
+    private final Set<String> mIds =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final CountDownLatch mLoaded = new CountDownLatch(1);
+
+    /**
+     * Loads the favourite ids on the io scheduler.
+     */
+    public void load() {
+        Observable.create(new Observable.OnSubscribe<List<Workflow>>() {
+            @Override
+            public void call(Subscriber<? super List<Workflow>> subscriber) {
+                subscriber.onNext(SQLite.select(Workflow_Table.id)
+                        .from(Workflow.class)
+                        .where(Workflow_Table.favourite.eq(true))
+                        .queryList());
+                subscriber.onCompleted();
+            }
+        }).subscribeOn(Schedulers.io())
+                .subscribe(new Action1<List<Workflow>>() {
+                    @Override
+                    public void call(List<Workflow> workflows) {
+                        for (Workflow workflow : workflows) {
+                            mIds.add(workflow.getId());
+                        }
+                        mLoaded.countDown();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(LOG_TAG, "Unable to load favourite workflow ids", throwable);
+                        mLoaded.countDown();
+                    }
+                });
+    }
+
+    /**
+     * Non blocking lookup for the main thread. Returns false until the initial load finished.
+     */
+    public boolean contains(String id) {
+        return id != null && mIds.contains(id);
+    }
+
+    /**
+     * Lookup for background threads which waits for the initial load to finish first.
+     */
+    public boolean awaitContains(String id) {
+        try {
+            mLoaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return contains(id);
+    }
+
+    public void set(String id, boolean favourite) {
+        if (id == null) return;
+        if (favourite) {
+            mIds.add(id);
+        } else {
+            mIds.remove(id);
+        }
+    }
+}
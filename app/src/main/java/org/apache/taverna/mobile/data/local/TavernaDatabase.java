@@ -19,6 +19,14 @@
 package org.apache.taverna.mobile.data.local;
 
 import com.raizlabs.android.dbflow.annotation.Database;
+import com.raizlabs.android.dbflow.annotation.Migration;
+import com.raizlabs.android.dbflow.sql.migration.BaseMigration;
+import com.raizlabs.android.dbflow.structure.database.DatabaseWrapper;
+
+import org.apache.taverna.mobile.data.model.Run;
+import org.apache.taverna.mobile.data.model.Workflow;
+
+import android.database.Cursor;
 
 @Database(name = TavernaDatabase.NAME,
         version = TavernaDatabase.VERSION,
@@ -29,5 +37,65 @@ public class TavernaDatabase {
     public static final String NAME = "Taverna";
 
 
-    public static final int VERSION = 1;
-}
\ No newline at end of file
+    //version 4 adds the UserAvatar table and version 5 the Run table, DBFlow creates both on
+    //upgrade
+    public static final int VERSION = 5;
+
+    /**
+     * Adds the last access time used by {@link WorkflowCacheEvictor} to pick the least recently
+     * used workflows. DBFlow also runs migrations after creating the tables of a fresh install,
+     * where the column already exists, so it is only added when missing.
+     */
+    @Migration(version = 2, database = TavernaDatabase.class)
+    public static class WorkflowLastAccessedMigration extends BaseMigration {
+
+        @Override
+        public void migrate(DatabaseWrapper database) {
+            if (!hasColumn(database, "Workflow", "lastAccessed")) {
+                database.execSQL("ALTER TABLE Workflow ADD COLUMN lastAccessed INTEGER");
+            }
+        }
+    }
+
+    private static boolean hasColumn(DatabaseWrapper database, String table, String column) {
+        Cursor cursor = database.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(nameIndex))) return true;
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Indexes the favourite column so {@link FavouriteWorkflowIds} can be filled without a
+     * table scan.
+     */
+    @Migration(version = 3, database = TavernaDatabase.class)
+    public static class FavouriteIndexMigration extends BaseMigration {
+
+        @Override
+        public void migrate(DatabaseWrapper database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS " + Workflow.FAVOURITE_INDEX
+                    + " ON Workflow(favourite)");
+        }
+    }
+
+    /**
+     * Indexes runs by workflow and state, run history is always read for a single workflow.
+     */
+    @Migration(version = 5, database = TavernaDatabase.class)
+    public static class RunIndexMigration extends BaseMigration {
+
+        @Override
+        public void migrate(DatabaseWrapper database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS " + Run.WORKFLOW_KEY_STATE_INDEX
+                    + " ON Run(workflowKey, state)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS " + Run.WORKFLOW_ID_STATE_INDEX
+                    + " ON Run(workflowId, state)");
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.local;
+
+import com.raizlabs.android.dbflow.config.FlowManager;
+import com.raizlabs.android.dbflow.structure.database.DatabaseWrapper;
+
+import org.apache.taverna.mobile.data.CatalogueMirror;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Keeps the cached myExperiment feed inside a row count and byte budget. Favourite workflows are
+ * never evicted; everything else is removed least recently used first, followed by the
+ * Type, Uploader and LicenseType rows no workflow refers to any more.
+ */
+public class WorkflowCacheEvictor {
+
+    public static final String PREF_MAX_WORKFLOWS = "pref_cache_max_workflows";
+
+    public static final String PREF_MAX_SIZE_KB = "pref_cache_max_size";
+
+    public static final int DEFAULT_MAX_WORKFLOWS = 500;
+
+    public static final int DEFAULT_MAX_SIZE_KB = 2048;
+
+    private static final String LOG_TAG = WorkflowCacheEvictor.class.getSimpleName();
+
+    private static final int DELETE_BATCH_SIZE = 100;
+
+    //approximate on-disk payload of a workflow row, used for the byte budget
+    private static final String ROW_SIZE = "(LENGTH(IFNULL(id, '')) + LENGTH(IFNULL(title, ''))"
+            + " + LENGTH(IFNULL(description, '')) + LENGTH(IFNULL(resource, ''))"
+            + " + LENGTH(IFNULL(uri, '')) + LENGTH(IFNULL(previewUri, ''))"
+            + " + LENGTH(IFNULL(svgUri, '')) + LENGTH(IFNULL(contentUri, ''))"
+            + " + LENGTH(IFNULL(contentType, '')) + LENGTH(IFNULL(createdAt, ''))"
+            + " + LENGTH(IFNULL(updatedAt, '')) + 64)";
+
+    private static final String QUERY_TOTALS = "SELECT COUNT(*), IFNULL(SUM(" + ROW_SIZE
+            + "), 0) FROM Workflow";
+
+    private static final String QUERY_CANDIDATES = "SELECT id, " + ROW_SIZE
+            + " FROM Workflow WHERE IFNULL(favourite, 0) = 0 ORDER BY lastAccessed ASC";
+
+    private static final String[] ORPHAN_DELETES = {
+            "DELETE FROM Type WHERE id NOT IN "
+                    + "(SELECT type_id FROM Workflow WHERE type_id IS NOT NULL)",
+            "DELETE FROM Uploader WHERE id NOT IN "
+                    + "(SELECT uploader_id FROM Workflow WHERE uploader_id IS NOT NULL)",
+            "DELETE FROM LicenseType WHERE id NOT IN "
+                    + "(SELECT licenseType_id FROM Workflow WHERE licenseType_id IS NOT NULL)"
+    };
+
+    private final SharedPreferences mPreferences;
+
+    private final WorkflowModelCache mWorkflowModelCache;
+
+    private final AtomicBoolean mRunning = new AtomicBoolean(false);
+
+    public WorkflowCacheEvictor(Context context, WorkflowModelCache workflowModelCache) {
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+        mWorkflowModelCache = workflowModelCache;
+    }
+
+    public int getMaxWorkflows() {
+        return readInt(PREF_MAX_WORKFLOWS, DEFAULT_MAX_WORKFLOWS);
+    }
+
+    public long getMaxBytes() {
+        return readInt(PREF_MAX_SIZE_KB, DEFAULT_MAX_SIZE_KB) * 1024L;
+    }
+
+    /**
+     * Runs an eviction pass on the io scheduler unless one is already in progress.
+     */
+    public void schedule() {
+        if (!mRunning.compareAndSet(false, true)) return;
+
+        evict().subscribeOn(Schedulers.io())
+                .subscribe(new Action1<Integer>() {
+                    @Override
+                    public void call(Integer evicted) {
+                        mRunning.set(false);
+                        Log.d(LOG_TAG, "Evicted " + evicted + " cached workflows");
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        mRunning.set(false);
+                        Log.e(LOG_TAG, "Workflow cache eviction failed", throwable);
+                    }
+                });
+    }
+
+    /**
+     * @return number of workflows removed from the cache
+     */
+    public Observable<Integer> evict() {
+        return Observable.create(new Observable.OnSubscribe<Integer>() {
+            @Override
+            public void call(Subscriber<? super Integer> subscriber) {
+                if (subscriber.isUnsubscribed()) return;
+                subscriber.onNext(evictNow(getMaxWorkflows(), getMaxBytes()));
+                subscriber.onCompleted();
+            }
+        });
+    }
+
+    private int evictNow(int maxWorkflows, long maxBytes) {
+        //a mirrored catalogue is meant to be kept whole
+        if (mPreferences.getBoolean(CatalogueMirror.PREF_ENABLED, false)) return 0;
+
+        DatabaseWrapper database = FlowManager.getDatabase(TavernaDatabase.class)
+                .getWritableDatabase();
+
+        long rows;
+        long bytes;
+        Cursor totals = database.rawQuery(QUERY_TOTALS, null);
+        try {
+            if (!totals.moveToFirst()) return 0;
+            rows = totals.getLong(0);
+            bytes = totals.getLong(1);
+        } finally {
+            totals.close();
+        }
+
+        if (rows <= maxWorkflows && bytes <= maxBytes) return 0;
+
+        List<String> victims = new ArrayList<>();
+        Cursor candidates = database.rawQuery(QUERY_CANDIDATES, null);
+        try {
+            while ((rows > maxWorkflows || bytes > maxBytes) && candidates.moveToNext()) {
+                victims.add(candidates.getString(0));
+                rows--;
+                bytes -= candidates.getLong(1);
+            }
+        } finally {
+            candidates.close();
+        }
+
+        database.beginTransaction();
+        try {
+            for (int start = 0; start < victims.size(); start += DELETE_BATCH_SIZE) {
+                List<String> batch = victims.subList(start,
+                        Math.min(start + DELETE_BATCH_SIZE, victims.size()));
+                database.execSQL("DELETE FROM Workflow WHERE id IN (" + toSqlList(batch) + ")");
+            }
+            for (String orphanDelete : ORPHAN_DELETES) {
+                database.execSQL(orphanDelete);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        for (String id : victims) {
+            mWorkflowModelCache.invalidate(id);
+        }
+        Log.d(LOG_TAG, mWorkflowModelCache.toString());
+
+        return victims.size();
+    }
+
+    private static String toSqlList(List<String> ids) {
+        StringBuilder builder = new StringBuilder();
+        for (String id : ids) {
+            if (builder.length() > 0) builder.append(',');
+            builder.append(DatabaseUtils.sqlEscapeString(id));
+        }
+        return builder.toString();
+    }
+
+    private int readInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(mPreferences.getString(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.local;
+
+import com.raizlabs.android.dbflow.config.FlowManager;
+import com.raizlabs.android.dbflow.structure.ModelAdapter;
+import com.raizlabs.android.dbflow.structure.database.DatabaseStatement;
+import com.raizlabs.android.dbflow.structure.database.DatabaseWrapper;
+
+import org.apache.taverna.mobile.data.model.Workflow;
+import org.apache.taverna.mobile.utils.MemoryPressureCoordinator;
+
+import android.database.Cursor;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import java.util.Map;
+
+/**
+ * Bounded identity map of {@link Workflow} models keyed by workflow id. While a workflow is
+ * cached every lookup returns the same instance, which must not be modified; writers change a
+ * copy from {@link #load(String)} and then call {@link #invalidate(String)}.
+ * Misses are loaded with fixed SQL and bound arguments so SQLite can reuse the prepared
+ * statement instead of compiling a new query for every id.
+ */
+public class WorkflowModelCache implements MemoryPressureCoordinator.TrimmableCache {
+
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    //rough fixed cost of a cached model and its type, uploader and licence, besides its strings
+    private static final int MODEL_OVERHEAD_BYTES = 512;
+
+    private static final String SELECT_BY_ID = "SELECT * FROM Workflow WHERE id = ? LIMIT 1";
+
+    private static final String COUNT_BY_ID = "SELECT COUNT(*) FROM Workflow WHERE id = ?";
+
+    private final LruCache<String, Workflow> mWorkflows;
+
+    private DatabaseStatement mCountStatement;
+
+    public WorkflowModelCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public WorkflowModelCache(int maxSize) {
+        mWorkflows = new LruCache<String, Workflow>(maxSize) {
+            @Override
+            protected Workflow create(String id) {
+                return load(id);
+            }
+        };
+    }
+
+    /**
+     * @return the cached instance, or the row loaded from the database, or null if there is none
+     */
+    @Nullable
+    public Workflow get(String id) {
+        return id == null ? null : mWorkflows.get(id);
+    }
+
+    public boolean exists(String id) {
+        if (id == null) return false;
+
+        synchronized (this) {
+            if (mCountStatement == null) {
+                mCountStatement = getDatabase().compileStatement(COUNT_BY_ID);
+            }
+            mCountStatement.bindString(1, id);
+            return mCountStatement.simpleQueryForLong() > 0;
+        }
+    }
+
+    public void invalidate(String id) {
+        if (id != null) mWorkflows.remove(id);
+    }
+
+    public void invalidateAll() {
+        mWorkflows.evictAll();
+        closeStatement();
+    }
+
+    /**
+     * Drops the least recently used fraction of the cached models.
+     *
+     * @return estimated bytes held by the dropped models
+     */
+    @Override
+    public long trim(float fraction) {
+        Map<String, Workflow> before = mWorkflows.snapshot();
+        mWorkflows.trimToSize((int) (before.size() * (1f - fraction)));
+        Map<String, Workflow> after = mWorkflows.snapshot();
+        //compiled again on the next exists()
+        closeStatement();
+
+        long released = 0;
+        for (Map.Entry<String, Workflow> entry : before.entrySet()) {
+            if (after.containsKey(entry.getKey())) continue;
+            released += estimateBytes(entry.getValue());
+        }
+        return released;
+    }
+
+    public int hitCount() {
+        return mWorkflows.hitCount();
+    }
+
+    public int missCount() {
+        return mWorkflows.missCount();
+    }
+
+    public float getHitRatio() {
+        int lookups = hitCount() + missCount();
+        return lookups == 0 ? 0f : (float) hitCount() / lookups;
+    }
+
+    public int size() {
+        return mWorkflows.size();
+    }
+
+    public int maxSize() {
+        return mWorkflows.maxSize();
+    }
+
+    @Override
+    public String toString() {
+        return "WorkflowModelCache[size=" + size() + "/" + maxSize() + ", hits=" + hitCount()
+                + ", misses=" + missCount() + ", hitRatio=" + getHitRatio() + "]";
+    }
+
+    /**
+     * Reads the row into a new instance that is not cached, for callers that modify it.
+     */
+    @Nullable
+    public Workflow load(String id) {
+        Cursor cursor = getDatabase().rawQuery(SELECT_BY_ID, new String[]{id});
+        try {
+            if (!cursor.moveToFirst()) return null;
+            ModelAdapter<Workflow> adapter = FlowManager.getModelAdapter(Workflow.class);
+            Workflow workflow = adapter.newInstance();
+            adapter.loadFromCursor(cursor, workflow);
+            return workflow;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private synchronized void closeStatement() {
+        if (mCountStatement != null) {
+            mCountStatement.close();
+            mCountStatement = null;
+        }
+    }
+
+    private static long estimateBytes(Workflow workflow) {
+        return MODEL_OVERHEAD_BYTES + 2L * (length(workflow.getTitle())
+                + length(workflow.getDescription()) + length(workflow.getPreviewUri())
+                + length(workflow.getSvgUri()) + length(workflow.getContentUri()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static DatabaseWrapper getDatabase() {
+        return FlowManager.getDatabase(TavernaDatabase.class).getWritableDatabase();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.model;
+
+import com.google.gson.JsonElement;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A Taverna Player run, as returned by {@code /runs} and {@code /runs/{id}}. The listing leaves
+ * out the output and log paths, which only the single run carries.
+ */
+public class PlayerRun {
+
+    @SerializedName("id")
+    long id;
+
+    @SerializedName("workflow_id")
+    long workflowId;
+
+    @SerializedName("name")
+    String name;
+
+    @SerializedName("state")
+    String state;
+
+    @SerializedName("status_message")
+    String statusMessage;
+
+    @SerializedName("start_time")
+    String startTime;
+
+    @SerializedName("finish_time")
+    String finishTime;
+
+    @SerializedName("outputs_zip")
+    String outputsZip;
+
+    @SerializedName("log")
+    String log;
+
+    @SerializedName("inputs")
+    JsonElement inputs;
+
+    @SerializedName("user")
+    PlayerUser user;
+
+    /**
+     * Owner of a run.
+     */
+    public static class PlayerUser {
+
+        @SerializedName("name")
+        String name;
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getWorkflowId() {
+        return workflowId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public String getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * @return path of the output archive, relative to the Player base url
+     */
+    public String getOutputsZip() {
+        return outputsZip;
+    }
+
+    /**
+     * @return path of the run log, relative to the Player base url
+     */
+    public String getLog() {
+        return log;
+    }
+
+    /**
+     * @return the run inputs as the Player lists them, shown but not interpreted by the app
+     */
+    public JsonElement getInputs() {
+        return inputs;
+    }
+
+    public PlayerUser getUser() {
+        return user;
+    }
+}
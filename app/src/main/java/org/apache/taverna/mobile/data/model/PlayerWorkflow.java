@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.model;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A workflow uploaded to Taverna Player, as returned by {@code /workflows}.
+ */
+public class PlayerWorkflow {
+
+    @SerializedName("id")
+    long id;
+
+    @SerializedName("title")
+    String title;
+
+    @SerializedName("description")
+    String description;
+
+    @SerializedName("created_at")
+    String createdAt;
+
+    @SerializedName("updated_at")
+    String updatedAt;
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return time the workflow document last changed, which is its version on the Player
+     */
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.model;
+
+import com.raizlabs.android.dbflow.annotation.Column;
+import com.raizlabs.android.dbflow.annotation.PrimaryKey;
+import com.raizlabs.android.dbflow.annotation.Table;
+
+import org.apache.taverna.mobile.data.local.TavernaBaseModel;
+import org.apache.taverna.mobile.data.local.TavernaDatabase;
+
+import android.text.TextUtils;
+
+import java.util.Locale;
+
+/**
+ * A Taverna Player run as listed by {@code /runs}, kept so run history opens from the database.
+ * Player runs carry the title of their workflow as name, which is how history screens that only
+ * know the myExperiment title find them, through {@link #workflowKey(String)}.
+ */
+@Table(database = TavernaDatabase.class)
+public class Run extends TavernaBaseModel {
+
+    //both indexes are created by TavernaDatabase.RunIndexMigration
+    public static final String WORKFLOW_KEY_STATE_INDEX = "runWorkflowKeyStateIndex";
+
+    public static final String WORKFLOW_ID_STATE_INDEX = "runWorkflowIdStateIndex";
+
+    @PrimaryKey
+    long id;
+
+    @Column
+    long workflowId;
+
+    @Column
+    String workflowKey;
+
+    @Column
+    String name;
+
+    @Column
+    String state;
+
+    @Column
+    String startTime;
+
+    @Column
+    String finishTime;
+
+    @Column
+    String author;
+
+    public Run() {
+    }
+
+    /**
+     * @return the lookup key runs of a workflow with this title or run name are stored under,
+     * the lower case name without spaces
+     */
+    public static String workflowKey(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.US).replace(" ", "");
+    }
+
+    /**
+     * @return whether the other run has the same content as this one
+     */
+    public boolean sameAs(Run other) {
+        return other != null
+                && id == other.id
+                && workflowId == other.workflowId
+                && TextUtils.equals(name, other.name)
+                && TextUtils.equals(state, other.state)
+                && TextUtils.equals(startTime, other.startTime)
+                && TextUtils.equals(finishTime, other.finishTime)
+                && TextUtils.equals(author, other.author);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getWorkflowId() {
+        return workflowId;
+    }
+
+    public void setWorkflowId(long workflowId) {
+        this.workflowId = workflowId;
+    }
+
+    public String getWorkflowKey() {
+        return workflowKey;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        this.workflowKey = workflowKey(name);
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(String startTime) {
+        this.startTime = startTime;
+    }
+
+    public String getFinishTime() {
+        return finishTime;
+    }
+
+    public void setFinishTime(String finishTime) {
+        this.finishTime = finishTime;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+}
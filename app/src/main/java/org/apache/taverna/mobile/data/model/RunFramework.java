@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.model;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+/**
+ * Skeleton of a new run returned by {@code /runs/new?workflow_id=}. Filling in the input values
+ * and posting it back to {@code /runs} creates the run.
+ */
+public class RunFramework {
+
+    @SerializedName("run")
+    Body run;
+
+    /**
+     * The run to be created.
+     */
+    public static class Body {
+
+        @SerializedName("name")
+        String name;
+
+        @SerializedName("workflow_id")
+        long workflowId;
+
+        @SerializedName("inputs_attributes")
+        List<Input> inputs;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public long getWorkflowId() {
+            return workflowId;
+        }
+
+        public List<Input> getInputs() {
+            return inputs;
+        }
+    }
+
+    /**
+     * One workflow input port and the value to run it with.
+     */
+    public static class Input {
+
+        @SerializedName("name")
+        String name;
+
+        @SerializedName("value")
+        String value;
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+
+    public Body getRun() {
+        return run;
+    }
+}
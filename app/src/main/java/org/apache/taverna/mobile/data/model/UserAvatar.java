@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.model;
+
+import com.raizlabs.android.dbflow.annotation.Column;
+import com.raizlabs.android.dbflow.annotation.PrimaryKey;
+import com.raizlabs.android.dbflow.annotation.Table;
+
+import org.apache.taverna.mobile.data.local.TavernaBaseModel;
+import org.apache.taverna.mobile.data.local.TavernaDatabase;
+
+/**
+ * Avatar url of a myExperiment user together with the time it was fetched, so screens can show
+ * an uploader's avatar without fetching user.xml again until the entry expires.
+ */
+@Table(database = TavernaDatabase.class)
+public class UserAvatar extends TavernaBaseModel {
+
+    @PrimaryKey
+    String userId;
+
+    @Column
+    String avatarUrl;
+
+    @Column
+    long fetchedAt;
+
+    public UserAvatar() {
+    }
+
+    public UserAvatar(String userId, String avatarUrl, long fetchedAt) {
+        this.userId = userId;
+        this.avatarUrl = avatarUrl;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    public void setAvatarUrl(String avatarUrl) {
+        this.avatarUrl = avatarUrl;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public void setFetchedAt(long fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
+}
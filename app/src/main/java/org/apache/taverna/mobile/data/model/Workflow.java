@@ -43,6 +43,9 @@ import java.util.List;
 @Root(name = "workflow")
 public class Workflow extends TavernaBaseModel implements Parcelable {
 
+    //created by TavernaDatabase.FavouriteIndexMigration
+    public static final String FAVOURITE_INDEX = "favouriteIndex";
+
     @Column
     @Attribute(name = "resource", required = false)
     String resource;
@@ -116,6 +119,9 @@ public class Workflow extends TavernaBaseModel implements Parcelable {
     @Column(defaultValue = "0")
     Boolean favourite;
 
+    @Column(defaultValue = "0")
+    long lastAccessed;
+
     public String getContentType() {
         return contentType;
     }
@@ -260,6 +266,14 @@ public class Workflow extends TavernaBaseModel implements Parcelable {
         this.favourite = favourite;
     }
 
+    public long getLastAccessed() {
+        return lastAccessed;
+    }
+
+    public void setLastAccessed(long lastAccessed) {
+        this.lastAccessed = lastAccessed;
+    }
+
     public Workflow() {
     }
 
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.remote;
+
+import com.facebook.stetho.okhttp3.StethoInterceptor;
+import com.google.gson.Gson;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Owns the one HTTP client every Taverna Player request goes through, so connections to the
+ * Player are pooled and reused across runs, polls and downloads. The client authenticates
+ * Player requests with {@link PlayerAuthInterceptor}. The {@link PlayerConfig} snapshot and the
+ * {@link PlayerService} are rebuilt only when the Player settings change.
+ */
+public class PlayerApiManager {
+
+    private final Context mContext;
+
+    private final OkHttpClient mOkHttpClient;
+
+    private final Gson mGson = new Gson();
+
+    private volatile PlayerConfig mConfig;
+
+    private volatile PlayerService mPlayerService;
+
+    //held in a field, preferences only keep a weak reference to their listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPreferenceListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences preferences,
+                                                      String key) {
+                    if (PlayerConfig.PREF_PLAYER_URL.equals(key)
+                            || PlayerConfig.PREF_USER.equals(key)
+                            || PlayerConfig.PREF_PASSWORD.equals(key)) {
+                        rebuild();
+                    }
+                }
+            };
+
+    public PlayerApiManager(Context context) {
+        mContext = context.getApplicationContext();
+        mOkHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(new PlayerAuthInterceptor(this))
+                .addNetworkInterceptor(new StethoInterceptor())
+                .build();
+        rebuild();
+        PreferenceManager.getDefaultSharedPreferences(mContext)
+                .registerOnSharedPreferenceChangeListener(mPreferenceListener);
+    }
+
+    private synchronized void rebuild() {
+        PlayerConfig config = PlayerConfig.from(mContext);
+        //credentials are read per request, only a new server needs a new service
+        if (!config.sameServer(mConfig)) {
+            mPlayerService = new Retrofit.Builder()
+                    .baseUrl(config.getBaseUrl())
+                    .addConverterFactory(GsonConverterFactory.create(mGson))
+                    .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
+                    .client(mOkHttpClient)
+                    .build()
+                    .create(PlayerService.class);
+        }
+        mConfig = config;
+    }
+
+    public PlayerConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * @return the shared client, for downloads and other requests the service does not cover
+     */
+    public OkHttpClient getOkHttpClient() {
+        return mOkHttpClient;
+    }
+
+    public PlayerService getPlayerService() {
+        return mPlayerService;
+    }
+
+    /**
+     * @return the Gson the service converts with, for models kept on disk or passed in intents
+     */
+    public Gson getGson() {
+        return mGson;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.remote;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Adds the Player credentials of the current {@link PlayerConfig} to requests for the Player,
+ * and asks for json unless the request says otherwise. Requests to other hosts, like redirects
+ * to a file store, go out untouched.
+ */
+class PlayerAuthInterceptor implements Interceptor {
+
+    private final PlayerApiManager mPlayerApiManager;
+
+    PlayerAuthInterceptor(PlayerApiManager playerApiManager) {
+        mPlayerApiManager = playerApiManager;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        PlayerConfig config = mPlayerApiManager.getConfig();
+        if (!config.isPlayerUrl(request.url())) {
+            return chain.proceed(request);
+        }
+
+        Request.Builder builder = request.newBuilder();
+        if (request.header("Authorization") == null) {
+            builder.header("Authorization", config.getAuthorization());
+        }
+        if (request.header("Accept") == null) {
+            builder.header("Accept", "application/json");
+        }
+        return chain.proceed(builder.build());
+    }
+}
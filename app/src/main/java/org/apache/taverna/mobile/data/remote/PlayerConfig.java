@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.remote;
+
+import org.apache.taverna.mobile.R;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.annotation.Nullable;
+import android.util.Base64;
+
+import java.nio.charset.Charset;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Immutable snapshot of the Taverna Player settings: base url and credentials, with the urls and
+ * Authorization header derived from them. {@link PlayerApiManager} takes a new one only when the
+ * settings change, so requests neither read preferences nor rebuild headers.
+ */
+public final class PlayerConfig {
+
+    static final String PREF_PLAYER_URL = "pref_player_url";
+
+    static final String PREF_USER = "pref_user";
+
+    static final String PREF_PASSWORD = "pref_password";
+
+    private static final String DEFAULT_CREDENTIAL = "default";
+
+    private final HttpUrl mBaseUrl;
+
+    private final String mUser;
+
+    private final String mAuthorization;
+
+    private PlayerConfig(HttpUrl baseUrl, String user, String password) {
+        mBaseUrl = baseUrl;
+        mUser = user;
+        mAuthorization = "Basic " + Base64.encodeToString(
+                (user + ":" + password).getBytes(Charset.forName("UTF-8")), Base64.NO_WRAP);
+    }
+
+    static PlayerConfig from(Context context) {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        String defaultUrl = context.getString(R.string.pref_player_default).trim();
+        HttpUrl baseUrl = parseBaseUrl(preferences.getString(PREF_PLAYER_URL, defaultUrl));
+        if (baseUrl == null) {
+            baseUrl = parseBaseUrl(defaultUrl);
+        }
+        return new PlayerConfig(baseUrl,
+                preferences.getString(PREF_USER, DEFAULT_CREDENTIAL),
+                preferences.getString(PREF_PASSWORD, DEFAULT_CREDENTIAL));
+    }
+
+    //relative urls only resolve below the base if it ends with a slash
+    @Nullable
+    private static HttpUrl parseBaseUrl(String url) {
+        url = url.trim();
+        return HttpUrl.parse(url.endsWith("/") ? url : url + "/");
+    }
+
+    public HttpUrl getBaseUrl() {
+        return mBaseUrl;
+    }
+
+    public String getUser() {
+        return mUser;
+    }
+
+    /**
+     * @return value of the Authorization header for the Player
+     */
+    public String getAuthorization() {
+        return mAuthorization;
+    }
+
+    public String getRunsUrl() {
+        return resolve(PlayerEndPoint.RUNS);
+    }
+
+    public String getRunFrameworkUrl(String workflowId) {
+        return mBaseUrl.resolve(PlayerEndPoint.RUN_FRAMEWORK).newBuilder()
+                .addQueryParameter("workflow_id", workflowId)
+                .toString();
+    }
+
+    /**
+     * Resolves a path the Player returned, like the {@code outputs_zip} or {@code log} of a run,
+     * against its base url.
+     *
+     * @return the absolute url, or null if path is not a valid reference
+     */
+    @Nullable
+    public String resolve(String path) {
+        HttpUrl url = mBaseUrl.resolve(path);
+        return url != null ? url.toString() : null;
+    }
+
+    /**
+     * @return whether url points at this Player, so it may be sent the credentials
+     */
+    public boolean isPlayerUrl(HttpUrl url) {
+        return url.scheme().equals(mBaseUrl.scheme()) && url.host().equals(mBaseUrl.host())
+                && url.port() == mBaseUrl.port();
+    }
+
+    boolean sameServer(PlayerConfig other) {
+        return other != null && mBaseUrl.equals(other.mBaseUrl);
+    }
+}
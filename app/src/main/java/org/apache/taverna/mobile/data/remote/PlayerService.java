@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.data.remote;
+
+import org.apache.taverna.mobile.data.model.PlayerRun;
+import org.apache.taverna.mobile.data.model.PlayerWorkflow;
+import org.apache.taverna.mobile.data.model.RunFramework;
+
+import java.util.List;
+
+import okhttp3.RequestBody;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.POST;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+import rx.Observable;
+
+/**
+ * Taverna Player API. Obtain it from {@link PlayerApiManager}, which adds the credentials.
+ * Calls made on threads that may block anyway, from tasks and the run monitor, are plain
+ * {@link Call}s.
+ */
+public interface PlayerService {
+
+    @GET(PlayerEndPoint.WORKFLOW)
+    Call<PlayerWorkflow> getWorkflow(@Path("id") String id);
+
+    /**
+     * @param workflow json body of the workflow document, see WorkflowUploader
+     */
+    @POST(PlayerEndPoint.WORKFLOWS)
+    Call<PlayerWorkflow> createWorkflow(@Body RequestBody workflow);
+
+    /**
+     * @param etag ETag of the last listing, or null; the Player answers 304 if nothing changed
+     */
+    @GET(PlayerEndPoint.RUNS)
+    Observable<Response<List<PlayerRun>>> getRuns(@Header("If-None-Match") String etag);
+
+    @GET(PlayerEndPoint.RUN)
+    Call<PlayerRun> getRun(@Path("id") long id);
+
+    /**
+     * @param etag ETag of a stored framework, or null; the Player answers 304 if it still holds
+     */
+    @GET(PlayerEndPoint.RUN_FRAMEWORK)
+    Call<RunFramework> getRunFramework(@Query("workflow_id") String workflowId,
+                                       @Header("If-None-Match") String etag);
+
+    @POST(PlayerEndPoint.RUNS)
+    Observable<PlayerRun> createRun(@Body RunFramework runFramework);
+
+    /**
+     * Same request as {@link #createRun(RunFramework)}, for tasks that wait for the new run.
+     */
+    @POST(PlayerEndPoint.RUNS)
+    Call<PlayerRun> createRunCall(@Body RunFramework runFramework);
+
+}
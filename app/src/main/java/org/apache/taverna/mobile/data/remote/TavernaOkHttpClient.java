@@ -41,4 +41,15 @@ public class TavernaOkHttpClient {
         return builder.build();
 
     }
+
+    /**
+     * Client for bulk downloads and frequent polling. It has no body logger, which would buffer
+     * and print every response in full.
+     */
+    public OkHttpClient getBulkOkHttpClient() {
+
+        return new OkHttpClient.Builder()
+                .addNetworkInterceptor(new StethoInterceptor())
+                .build();
+    }
 }
\ No newline at end of file
@@ -28,19 +28,18 @@ import org.apache.taverna.mobile.R;
 import org.apache.taverna.mobile.adapters.WorkflowAdapter;
 import org.apache.taverna.mobile.tavernamobile.User;
 import org.apache.taverna.mobile.tavernamobile.Workflow;
+import org.apache.taverna.mobile.utils.AvatarImageLoader;
 import org.apache.taverna.mobile.utils.AvatarLoader;
+import org.apache.taverna.mobile.utils.PriorityExecutor.Priority;
+import org.apache.taverna.mobile.utils.TaskExecutors;
 import org.apache.taverna.mobile.utils.WorkflowLoader;
 
 import android.app.Activity;
 import android.app.ProgressDialog;
 import android.app.SearchManager;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
-import android.support.v4.util.LruCache;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.widget.DefaultItemAnimator;
 import android.support.v7.widget.LinearLayoutManager;
@@ -56,14 +55,9 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
-import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.List;
 
 /**
@@ -90,7 +84,6 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
     private static RecyclerView mListView;
     private static View rootView;
     private static TextView noDataText;
-    private static LruCache<String, Bitmap> avatarCache;
     private static WorkflowAdapter workflowAdapter;
     //variables for controlling the infinite scroll mechanism
     private static int previousTotal = 0;
@@ -173,20 +166,18 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
             @Override
             public void run() {
                 synchronized (this) {
-                    author.getUserViewHolder().author_name.setText(author.getName());
+                    WorkflowAdapter.ViewHolder viewHolder = author.getUserViewHolder();
+                    //the row was rebound to another workflow while the details were parsed
+                    if (!viewHolder.isBoundTo(author.getRowId())) return;
+
+                    viewHolder.author_name.setText(author.getName());
                     //((TextView) rootView.findViewById(R.id.workflow_author)).setText(author
                     // .getName());
-                    //check whether avatar is already in the cache before trying to download it
-                    // from remote resource
-                    if (avatarCache.get(author.getDetailsUri()) == null) {
-                        new AvatarLoader(author.getUserViewHolder()).execute(author
-                                .getDetailsUri(), author.getRowId());
-                    } else {
-                        author.getUserViewHolder().author_profile.setImageBitmap(avatarCache.get
-                                (author.getDetailsUri()));
-//                        ((ImageView) rootView.findViewById(R.id.author_profile_image))
-// .setImageBitmap(avatarCache.get(author.getDetailsUri()));
-                    }
+                    //the avatar bitmap itself is cached by Glide once the url is known
+                    AvatarLoader avatarLoader = new AvatarLoader(viewHolder);
+                    viewHolder.track(avatarLoader);
+                    avatarLoader.executeOnExecutor(TaskExecutors.network(Priority.LOW),
+                            author.getDetailsUri(), author.getRowId());
                     Log.d(TAG, "Author cached ID " + author.getDetailsUri() + "\n Name: " +
                             "" + author.getName());
                 }
@@ -197,7 +188,7 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
     /**
      * Called when avatar xml has finished parsing. fetches the avatar remotely and updates the
      * item
-     * in the list view
+     * in the list view, unless the row has been rebound to another workflow in the meantime
      *
      * @param author the author avatar to load
      */
@@ -206,10 +197,9 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
         ((Activity) cx).runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                //      new LoadAuthorAvatar((ImageView) rootView.findViewById(R.id
-                // .author_profile_image),author.getDetailsUri()).execute(author.getAvatarUrl());
-                new LoadAuthorAvatar(author.getUserViewHolder().author_profile, author
-                        .getDetailsUri()).execute(author.getAvatarUrl());
+                if (!author.getUserViewHolder().isBoundTo(author.getRowId())) return;
+                AvatarImageLoader.loadAvatar(cx, author.getAvatarUrl(),
+                        author.getUserViewHolder().author_profile);
             }
         });
     }
@@ -258,18 +248,6 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
         mListView.setOnScrollListener(scrollListener);
         mListView.setItemAnimator(new DefaultItemAnimator());
 
-        final int maxMemory = (int) (Runtime.getRuntime().maxMemory() / 1024);
-        // Use 1/8th of the available memory for this memory cache. up to 4MB for high screen
-        // densities and 1.2Mb for low sds
-        final int cacheSize = maxMemory / 8;
-        avatarCache = new LruCache<String, Bitmap>(cacheSize) {
-            @Override
-            protected int sizeOf(String key, Bitmap bitmap) {
-                // The cache size will be measured in kilobytes
-                return bitmap.getByteCount() / 1024;
-            }
-        };
-
         return rootView;
     }
 
@@ -304,7 +282,8 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
     public void onResume() {
         super.onResume();
         if (!stateOn) {
-            new WorkflowLoader(getActivity(), swipeRefreshLayout).execute("" + currentPage);
+            new WorkflowLoader(getActivity(), swipeRefreshLayout).executeOnExecutor(
+                    TaskExecutors.network(Priority.NORMAL), "" + currentPage);
 
             if (mListView.getAdapter().getItemCount() == 0) {
                 mListView.setVisibility(View.GONE);
@@ -350,7 +329,8 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getTitle().equals("Refresh")) {
-            new WorkflowLoader(getActivity(), swipeRefreshLayout).execute("1");
+            new WorkflowLoader(getActivity(), swipeRefreshLayout).executeOnExecutor(
+                    TaskExecutors.network(Priority.NORMAL), "1");
             return true;
         }
         return super.onOptionsItemSelected(item);
@@ -388,7 +368,8 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
         setIsRefreshData(true);
         setIsLoadMoreData(false);
 
-        new WorkflowLoader(getActivity(), swipeRefreshLayout).execute("" + 1);
+        new WorkflowLoader(getActivity(), swipeRefreshLayout).executeOnExecutor(
+                TaskExecutors.network(Priority.NORMAL), "" + 1);
     }
 
     /**
@@ -410,50 +391,6 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
         return true;
     }
 
-    /**
-     * Load the Author Avatar from a background Task
-     */
-    private static class LoadAuthorAvatar extends AsyncTask<String, Void, Bitmap> {
-        ImageView img;
-        String row_id_as_key;
-
-        public LoadAuthorAvatar(ImageView imageView, String rowid) {
-            img = imageView;
-            row_id_as_key = rowid;
-        }
-
-        @Override
-        protected Bitmap doInBackground(String... strings) {
-            Bitmap myBitmap = null;
-            try {
-                URL url = new URL(strings[0]);
-                HttpURLConnection connection = null;
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setDoInput(true);
-                connection.connect();
-                InputStream input = connection.getInputStream();
-                myBitmap = BitmapFactory.decodeStream(input);
-                input.close();
-
-            } catch (IOException e) {
-                Log.e(TAG, "doInBackground: ", e);
-            }
-            return myBitmap;
-        }
-
-        @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            img.setImageBitmap(bitmap);
-            //cache this image for faster loading next time
-            try {
-                avatarCache.put(row_id_as_key, bitmap);
-
-            } catch (NullPointerException np) {
-
-            }
-        }
-    }
-
     private class InfiniteScrollListener extends RecyclerView.OnScrollListener {
         /**
          * Callback method to be invoked when the RecyclerView has been scrolled. This will be
@@ -482,7 +419,8 @@ public class WorkflowItemFragment extends Fragment implements SwipeRefreshLayout
                 Toast.makeText(getActivity(), "Loading more", Toast.LENGTH_SHORT).show();
                 setIsLoadMoreData(true);
                 currentPage++;
-                new WorkflowLoader(getActivity(), swipeRefreshLayout).execute("" + currentPage);
+                new WorkflowLoader(getActivity(), swipeRefreshLayout).executeOnExecutor(
+                        TaskExecutors.network(Priority.NORMAL), "" + currentPage);
                 Log.d(TAG, currentPage + "");
                 loading = true;
             }
@@ -2,14 +2,15 @@ package org.apache.taverna.mobile.fragments.workflowdetails;
 
 
 import org.apache.taverna.mobile.R;
-import org.apache.taverna.mobile.tavernamobile.TavernaPlayerAPI;
-import org.apache.taverna.mobile.utils.WorkflowDownloadManager;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.activities.RunLogActivity;
+import org.apache.taverna.mobile.activities.RunOutputsActivity;
+import org.apache.taverna.mobile.data.model.PlayerRun;
+import org.apache.taverna.mobile.utils.RunStatusMonitor;
 
-import android.app.Activity;
-import android.content.Context;
+import android.content.Intent;
 import android.os.Bundle;
+import android.os.Environment;
 import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
 import android.text.method.ScrollingMovementMethod;
@@ -25,15 +26,9 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Timer;
-import java.util.TimerTask;
+
 
 import static org.apache.taverna.mobile.activities.DashboardMainActivity.APP_DIRECTORY_NAME;
 
@@ -42,14 +37,15 @@ import static org.apache.taverna.mobile.activities.DashboardMainActivity.APP_DIR
  * Use the {@link RunFragment#newInstance} factory method to
  * create an instance of this fragment.
  */
-public class RunFragment extends Fragment implements View.OnClickListener {
+public class RunFragment extends Fragment implements View.OnClickListener,
+        RunStatusMonitor.Listener {
 
     private static final String TAG = "RunFragment";
     private View rootView;
     private TextView runIdTextView, runNameTextView;
     private ImageButton status;
     private TextView runStateTextView, runStartTime, runEndTime, runInputsText;
-    private Button downloadOutput, downloadLogs;
+    private Button downloadOutput, downloadLogs, browseOutputs, liveLog;
     private int run_id;
     private String run_output_url = "";
     private String run_logs_url = "";
@@ -90,6 +86,8 @@ public class RunFragment extends Fragment implements View.OnClickListener {
         runInputsText = (TextView) rootView.findViewById(R.id.runinputsTextView);
         downloadOutput = (Button) rootView.findViewById(R.id.buttonWorkflowDownloadOutput);
         downloadLogs = (Button) rootView.findViewById(R.id.downloadRunLogs);
+        browseOutputs = (Button) rootView.findViewById(R.id.buttonBrowseOutputs);
+        liveLog = (Button) rootView.findViewById(R.id.buttonLiveLog);
 
         return rootView;
     }
@@ -106,14 +104,15 @@ public class RunFragment extends Fragment implements View.OnClickListener {
         super.onResume();
         String runresult = getActivity().getIntent().getStringExtra("runresult");
         try {
-            JSONObject resultObject = new JSONObject(runresult);
-            String runName = resultObject.getString("name");
-            run_id = (int) resultObject.get("id");
+            PlayerRun resultObject = TavernaApplication.getPlayerApiManager().getGson()
+                    .fromJson(runresult, PlayerRun.class);
+            String runName = resultObject.getName();
+            run_id = (int) resultObject.getId();
             String runId = "" + run_id;
-            String runState = resultObject.getString("state");
-            String runStarted = resultObject.getString("start_time");
-            String runEnded = resultObject.getString("finish_time");
-            String runInputs = resultObject.getString("inputs");
+            String runState = String.valueOf(resultObject.getState());
+            String runStarted = resultObject.getStartTime();
+            String runEnded = resultObject.getFinishTime();
+            String runInputs = String.valueOf(resultObject.getInputs());
 
             runIdTextView.setText(runId);
             runNameTextView.setText(runName);
@@ -138,12 +137,22 @@ public class RunFragment extends Fragment implements View.OnClickListener {
 
             downloadOutput.setOnClickListener(this);
             downloadLogs.setOnClickListener(this);
+            browseOutputs.setOnClickListener(this);
+            liveLog.setOnClickListener(this);
             reloadRunResult();
-        } catch (JSONException e) {
+        } catch (RuntimeException e) {
+            //no run, or not one the Player sent
             Log.e(TAG, "onResume: ", e);
         }
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        //the run stays monitored and a notification reports its next state change
+        TavernaApplication.getRunStatusMonitor().unwatch(run_id, this);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         // Handle action bar item clicks here. The action bar will
@@ -162,9 +171,8 @@ public class RunFragment extends Fragment implements View.OnClickListener {
     }
 
     private void reloadRunResult() {
-        Timer t = new Timer();
-        // t.scheduleAtFixedRate(new RunTimerTask(getActivity(), run_id), 0, 5000);
-        t.schedule(new RunTimerTask(getActivity(), run_id), 1);
+        //polls right away, then keeps delivering state changes until onPause
+        TavernaApplication.getRunStatusMonitor().watch(run_id, this);
     }
 
     @Override
@@ -177,13 +185,11 @@ public class RunFragment extends Fragment implements View.OnClickListener {
                         Toast.makeText(getActivity(), "No run logs available", Toast.LENGTH_LONG)
                                 .show();
                     } else {
-                        new WorkflowDownloadManager(getActivity()).downloadWorkflow(
-                                new File(PreferenceManager.getDefaultSharedPreferences
-                                        (getActivity()).getString(
+                        downloadRunFile(run_output_url, PreferenceManager
+                                .getDefaultSharedPreferences(getActivity()).getString(
                                         APP_DIRECTORY_NAME + "/Runoutput/outputs",
-                                        "/TavernaMobile/Runouput/outputs/")),
-                                new TavernaPlayerAPI(getActivity()).mPlayerRunUrl +
-                                        run_output_url.substring(0, 5));
+                                        "/TavernaMobile/Runouput/outputs/"),
+                                "run" + run_id + "_outputs.zip");
                     }
                 } catch (Exception e) {
                     Log.e(TAG, "onClick: ", e);
@@ -198,13 +204,11 @@ public class RunFragment extends Fragment implements View.OnClickListener {
                         Toast.makeText(getActivity(), "No run logs available", Toast.LENGTH_LONG)
                                 .show();
                     } else {
-                        new WorkflowDownloadManager(getActivity()).downloadWorkflow(
-                                new File(PreferenceManager.getDefaultSharedPreferences
-                                        (getActivity()).getString(
+                        downloadRunFile(run_logs_url, PreferenceManager
+                                .getDefaultSharedPreferences(getActivity()).getString(
                                         APP_DIRECTORY_NAME + "/Runoutput/logs/",
-                                        "/TavernaMobile/Runoutput/logs")),
-                                new TavernaPlayerAPI(getActivity()).mPlayerRunUrl + run_logs_url
-                                        .substring(0, 5));
+                                        "/TavernaMobile/Runoutput/logs"),
+                                "run" + run_id + "_log.txt");
                     }
                 } catch (Exception e) {
                     Log.e(TAG, "onClick: ", e);
@@ -212,85 +216,81 @@ public class RunFragment extends Fragment implements View.OnClickListener {
                             .LENGTH_LONG).show();
                 }
                 break;
-        }
-    }
-
-    public void updateRun(Context context, final JSONObject runInfo) {
-        if (null != runInfo)
-            ((Activity) context).runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        runStartTime.setHint(runInfo.getString("start_time"));
-                        runEndTime.setHint(runInfo.getString("finish_time"));
-                        runStateTextView.setText(runInfo.getString("status_message"));
-
-                        if (runInfo.getString("status_message").contains("Pending")) {
-                            status.setImageResource(android.R.drawable.presence_busy);
-                        } else if (runInfo.getString("status_message").contains("Running")) {
-                            status.setImageResource(android.R.drawable.presence_away);
-                        } else if (runInfo.getString("status_message").contains("Finished")) {
-                            status.setImageResource(android.R.drawable.presence_online);
-                        } else if (runInfo.getString("status_message").contains("Failed")) {
-                            status.setImageResource(android.R.drawable.presence_offline);
-                        } else {
-                            status.setImageResource(android.R.drawable.presence_invisible);
-                        }
-                        run_output_url = runInfo.has("outputs_zip") ? runInfo.getString
-                                ("outputs_zip") : "";
-                        run_logs_url = runInfo.has("log") ? runInfo.getString("log") : "";
-                    } catch (JSONException e) {
-                        Log.e(TAG, "run: ", e);
+            case R.id.buttonBrowseOutputs:
+                try {
+                    if (run_output_url.isEmpty()) {
+                        Toast.makeText(getActivity(), "No run outputs available",
+                                Toast.LENGTH_LONG).show();
+                    } else {
+                        startActivity(new Intent(getActivity(), RunOutputsActivity.class)
+                                .putExtra(RunOutputsActivity.EXTRA_OUTPUTS_URL,
+                                        playerUrl(run_output_url)));
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "onClick: ", e);
+                }
+                break;
+            case R.id.buttonLiveLog:
+                try {
+                    if (run_logs_url.isEmpty()) {
+                        Toast.makeText(getActivity(), "No run logs available", Toast.LENGTH_LONG)
+                                .show();
+                    } else {
+                        startActivity(new Intent(getActivity(), RunLogActivity.class)
+                                .putExtra(RunLogActivity.EXTRA_RUN_ID, run_id)
+                                .putExtra(RunLogActivity.EXTRA_LOG_URL, playerUrl(run_logs_url)));
                     }
+                } catch (IOException e) {
+                    Log.e(TAG, "onClick: ", e);
                 }
-            });
+                break;
+        }
     }
 
-    private class RunTimerTask extends TimerTask {
-
-        private Context context;
-        private int runid;
-
-        public RunTimerTask(Context context, int runID) {
-            this.context = context;
-            this.runid = runID;
+    //the player gives output and log locations as paths relative to its root
+    private String playerUrl(String path) throws IOException {
+        String url = TavernaApplication.getPlayerApiManager().getConfig().resolve(path);
+        if (url == null) {
+            throw new IOException("Invalid player url for " + path);
         }
+        return url;
+    }
 
-        @Override
-        public void run() {
-            //QUERY player for the continuous status of the workflow run and update the ui with
-            // the results
-            StringBuffer sb = new StringBuffer();
-            try {
-
-                URL workflowurl = new URL(new TavernaPlayerAPI(this.context).mPlayerRunUrl +
-                        this.runid);
-                HttpURLConnection connection = (HttpURLConnection) workflowurl.openConnection();
-
-                connection.setRequestProperty("Accept", "application/json");
-                connection.setRequestMethod("GET");
-                connection.connect(); //send request
-
-                InputStream dis = connection.getInputStream();
-                BufferedReader br = new BufferedReader(new InputStreamReader(dis, "UTF-8"));
-
-                String jsonData = "";
-                while ((jsonData = br.readLine()) != null) {
-                    //json results of the full workflow details
-                    sb.append(jsonData);
-                }
-                dis.close();
-                br.close();
-                connection.disconnect();
-
-                JSONObject runInfo = new JSONObject(sb.toString());
-                updateRun(this.context, runInfo);
+    private void downloadRunFile(String path, String directory, String fileName)
+            throws IOException {
+        File destination = new File(new File(Environment.getExternalStorageDirectory(),
+                directory), fileName);
+        TavernaApplication.getSegmentedDownloader().enqueue(playerUrl(path), destination);
+        Toast.makeText(getActivity(), R.string.downloadprogress, Toast.LENGTH_SHORT).show();
+    }
 
-            } catch (IOException ex) {
-                Log.e(TAG, "run: ", ex);
-            } catch (JSONException e) {
-                Log.e(TAG, "run: ", e);
-            }
+    @Override
+    public void onRunChanged(PlayerRun runInfo) {
+        String statusMessage = String.valueOf(runInfo.getStatusMessage());
+        runStartTime.setHint(runInfo.getStartTime());
+        runEndTime.setHint(runInfo.getFinishTime());
+        runStateTextView.setText(statusMessage);
+
+        if (statusMessage.contains("Pending")) {
+            status.setImageResource(android.R.drawable.presence_busy);
+        } else if (statusMessage.contains("Running")) {
+            status.setImageResource(android.R.drawable.presence_away);
+        } else if (statusMessage.contains("Finished")) {
+            status.setImageResource(android.R.drawable.presence_online);
+        } else if (statusMessage.contains("Failed")) {
+            status.setImageResource(android.R.drawable.presence_offline);
+        } else {
+            status.setImageResource(android.R.drawable.presence_invisible);
         }
+        run_output_url = runInfo.getOutputsZip() != null ? runInfo.getOutputsZip() : "";
+        run_logs_url = runInfo.getLog() != null ? runInfo.getLog() : "";
+    }
+
+    @Override
+    public void onRunGone(int runId) {
+        runStateTextView.setText(R.string.run_gone);
+        status.setImageResource(android.R.drawable.presence_invisible);
+        run_output_url = "";
+        run_logs_url = "";
     }
 }
@@ -25,14 +25,12 @@ package org.apache.taverna.mobile.fragments.workflowdetails;
  */
 
 import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.TavernaApplication;
 import org.apache.taverna.mobile.adapters.RunAdapter;
+import org.apache.taverna.mobile.data.local.DBHelper;
+import org.apache.taverna.mobile.data.model.Run;
 import org.apache.taverna.mobile.tavernamobile.Runs;
-import org.apache.taverna.mobile.tavernamobile.Workflow;
-import org.apache.taverna.mobile.utils.DetailsLoader;
 
-import android.app.LoaderManager;
-import android.app.ProgressDialog;
-import android.content.Loader;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v7.widget.LinearLayoutManager;
@@ -46,22 +44,29 @@ import android.widget.TextView;
 import java.util.ArrayList;
 import java.util.List;
 
+import rx.Observable;
+import rx.Observer;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.CompositeSubscription;
+
 /**
  * A simple {@link Fragment} subclass.
  * Use the {@link WorkflowRunHistoryFragment#newInstance} factory method to
  * create an instance of this fragment.
  */
-public class WorkflowRunHistoryFragment extends Fragment implements LoaderManager
-        .LoaderCallbacks<Workflow> {
+public class WorkflowRunHistoryFragment extends Fragment {
     private static final String TAG = "WorkflowRunHistoryFragment";
     // the fragment initialization parameters, e.g. ARG_ITEM_NUMBER
     private static final String ARG_PARAM2 = "param2";
     private static String workflowID; //represents a run name that matches the given workflow
     List<Runs> runsList;
-    private ProgressDialog progressDialog;
     private RecyclerView mRecyclerView;
     private TextView emptyRunHistoryTextView;
     private RunAdapter runAdapter;
+    private DBHelper mDBHelper;
+    private final CompositeSubscription mSubscriptions = new CompositeSubscription();
 
     public WorkflowRunHistoryFragment() {
         // Required empty public constructor
@@ -94,11 +99,8 @@ public class WorkflowRunHistoryFragment extends Fragment implements LoaderManage
                 SimpleDateFormat.getDateTimeInstance().format(new Date()).toString()
                 ,SimpleDateFormat.getDateTimeInstance().format(new Date()).toString(),"finished"));
        */
-        progressDialog = new ProgressDialog(getActivity());
-        progressDialog.setMessage(getActivity().getResources().getString(R.string.loading));
-        progressDialog.setCancelable(true);
-
         runAdapter = new RunAdapter(getActivity(), runsList);
+        mDBHelper = new DBHelper();
         // System.out.println("WorkflowTitle->Run->"+workflowID);
     }
 
@@ -112,10 +114,54 @@ public class WorkflowRunHistoryFragment extends Fragment implements LoaderManage
         mRecyclerView.setHasFixedSize(true);
         mRecyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
         mRecyclerView.setAdapter(runAdapter);
-        getActivity().getLoaderManager().initLoader(0, savedInstanceState, this).forceLoad();
+        loadRuns();
         return rootView;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mSubscriptions.clear();
+    }
+
+    /**
+     * Shows the stored runs right away, then syncs the Player run listing and shows the runs
+     * again if anything changed.
+     */
+    private void loadRuns() {
+        mSubscriptions.add(Observable.concat(mDBHelper.getRuns(workflowID),
+                TavernaApplication.getRunHistorySync().sync()
+                        .filter(new Func1<Integer, Boolean>() {
+                            @Override
+                            public Boolean call(Integer changed) {
+                                return changed > 0;
+                            }
+                        })
+                        .concatMap(new Func1<Integer, Observable<List<Run>>>() {
+                            @Override
+                            public Observable<List<Run>> call(Integer changed) {
+                                return mDBHelper.getRuns(workflowID);
+                            }
+                        }))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Observer<List<Run>>() {
+                    @Override
+                    public void onCompleted() {
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        Log.e(TAG, "Unable to sync run history", e);
+                    }
+
+                    @Override
+                    public void onNext(List<Run> runs) {
+                        showRuns(runs);
+                    }
+                }));
+    }
+
     /**
      * Called when the fragment is visible to the user and actively running.
      * This is generally
@@ -135,38 +181,25 @@ public class WorkflowRunHistoryFragment extends Fragment implements LoaderManage
         super.onDetach();
     }
 
-    @Override
-    public Loader<Workflow> onCreateLoader(int i, Bundle bundle) {
-        //progressDialog.show();
-        return new DetailsLoader(getActivity(),
-                DetailsLoader.LoadType.TYPE_RUN_HISTORY,
-                workflowID);
-    }
-
-    @Override
-    public void onLoadFinished(Loader<Workflow> workflowLoader, Workflow workflow) {
-
-        try {
-            if (workflow.getWorkflowRuns() != null && workflow.getWorkflowRuns().size() != 0) {
-
-                runAdapter.setRunList(workflow.getWorkflowRuns());
-                mRecyclerView.setAdapter(runAdapter);
-                mRecyclerView.setVisibility(View.VISIBLE);
-                emptyRunHistoryTextView.setVisibility(View.GONE);
-
-            } else {
-                mRecyclerView.setVisibility(View.GONE);
-                emptyRunHistoryTextView.setVisibility(View.VISIBLE);
-            }
-        } catch (NullPointerException np) {
-            Log.e(TAG, "onLoadFinished:", np);
+    private void showRuns(List<Run> runs) {
+        if (runs.isEmpty()) {
+            mRecyclerView.setVisibility(View.GONE);
+            emptyRunHistoryTextView.setVisibility(View.VISIBLE);
+            return;
         }
 
-        // progressDialog.dismiss();
-    }
-
-    @Override
-    public void onLoaderReset(Loader<Workflow> workflowLoader) {
-        workflowLoader.reset();
+        List<Runs> runList = new ArrayList<Runs>(runs.size());
+        for (Run run : runs) {
+            Runs mrun = new Runs(run.getName(), run.getStartTime(), run.getFinishTime(),
+                    run.getState());
+            mrun.setrunId(run.getId());
+            mrun.setRunWorkflowId(run.getWorkflowId());
+            mrun.setRunAuthor(run.getAuthor());
+            runList.add(mrun);
+        }
+        runAdapter.setRunList(runList);
+        runAdapter.notifyDataSetChanged();
+        mRecyclerView.setVisibility(View.VISIBLE);
+        emptyRunHistoryTextView.setVisibility(View.GONE);
     }
 }
@@ -31,18 +31,22 @@ import com.dropbox.client2.exception.DropboxException;
 import com.dropbox.client2.session.AppKeyPair;
 
 import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.TavernaApplication;
 import org.apache.taverna.mobile.activities.DashboardMainActivity;
 import org.apache.taverna.mobile.adapters.WorkflowAdapter;
-import org.apache.taverna.mobile.tavernamobile.TavernaPlayerAPI;
+import org.apache.taverna.mobile.data.model.PlayerWorkflow;
+import org.apache.taverna.mobile.data.model.RunFramework;
 import org.apache.taverna.mobile.tavernamobile.User;
 import org.apache.taverna.mobile.tavernamobile.Workflow;
+import org.apache.taverna.mobile.utils.BatchRunDialog;
 import org.apache.taverna.mobile.utils.DetailsLoader;
+import org.apache.taverna.mobile.utils.PreviewImageLoader;
+import org.apache.taverna.mobile.utils.PriorityExecutor.Priority;
 import org.apache.taverna.mobile.utils.RunTask;
+import org.apache.taverna.mobile.utils.TaskExecutors;
 import org.apache.taverna.mobile.utils.WorkflowDB;
 import org.apache.taverna.mobile.utils.WorkflowDownloadManager;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.apache.taverna.mobile.utils.WorkflowUploader;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -54,14 +58,11 @@ import android.content.DialogInterface;
 import android.content.Loader;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
-import android.util.Base64;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -76,20 +77,16 @@ import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Created by Larry Akah on 6/9/15.
@@ -178,7 +175,7 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
                 type.setText(typeText);
 
                 //preview.setImageURI(Uri.parse(wk.getWorkflowPreview()));
-                new LoadImageThread(preview, wk.getWorkflowPreview()).execute();
+                PreviewImageLoader.loadDetailPreview(cont, wk.getWorkflowPreview(), preview);
                 download_url = wk.getWorkflowRemoteUrl();
                 zoomin.setAnimationListener(new Animation.AnimationListener() {
 
@@ -311,7 +308,8 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
             case R.id.run_wk:
                 if (((TextView) rootView.findViewById(R.id.wtype)).getText().toString().contains
                         ("Taverna 2")) {
-                    new WorkflowProcessTask(getActivity()).execute(download_url);
+                    new WorkflowProcessTask(getActivity()).executeOnExecutor(
+                            TaskExecutors.network(Priority.HIGH), download_url);
                 } else {
                     Toast.makeText(getActivity(), "Sorry! Only Taverna 2 workflows can be run.",
                             Toast.LENGTH_LONG).show();
@@ -367,7 +365,8 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
                     mDBApi.getSession().startOAuth2Authentication(getActivity());
                 } else {
                     mDBApi.getSession().setOAuth2AccessToken(authToken);
-                    new WorkflowDriveUpload().execute(download_url);
+                    new WorkflowDriveUpload().executeOnExecutor(
+                            TaskExecutors.network(Priority.NORMAL), download_url);
                 }
                 break;
             case R.id.saveToGoogleDriveButton:
@@ -396,7 +395,8 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
                 String accessToken = mDBApi.getSession().getOAuth2AccessToken();
                 PreferenceManager.getDefaultSharedPreferences(getActivity()).edit().putString
                         ("dropboxauth", accessToken).commit();
-                new WorkflowDriveUpload().execute(download_url);
+                new WorkflowDriveUpload().executeOnExecutor(
+                        TaskExecutors.network(Priority.NORMAL), download_url);
             } catch (IllegalStateException e) {
                 Log.i("DbAuthLog", "Error authenticating", e);
             }
@@ -446,43 +446,9 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
         return edt;
     }
 
-    private static class LoadImageThread extends AsyncTask<String, Void, Bitmap> {
-        ImageView imageView;
-        String src;
-
-        public LoadImageThread(ImageView image, String source) {
-            imageView = image;
-            src = source;
-        }
-
-        @Override
-        protected Bitmap doInBackground(String... strings) {
-            Bitmap myBitmap = null;
-            try {
-                URL url = new URL(src);
-                HttpURLConnection connection = null;
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setDoInput(true);
-                connection.connect();
-                InputStream input = connection.getInputStream();
-                myBitmap = BitmapFactory.decodeStream(input);
-//                imageView.setImageBitmap(myBitmap);
-            } catch (IOException e) {
-                Log.e(TAG, "doInBackground: ", e);
-            }
-            return myBitmap;
-        }
-
-        @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            imageView.setImageBitmap(bitmap);
-        }
-    }
-
     //fetch and compute the framework on which the run inputs are to be built and entered
-    private class WorkflowRunTask extends AsyncTask<String, Void, String> {
+    private class WorkflowRunTask extends AsyncTask<String, Void, RunFramework> {
 
-        TavernaPlayerAPI tavernaPlayerAPI = new TavernaPlayerAPI();
         private Context context;
 
         private WorkflowRunTask(Context context) {
@@ -496,49 +462,25 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
             progressDialog.show();
         }
 
+        /**
+         * @param params Player workflow id and version, the version may be null
+         */
         @Override
-        protected String doInBackground(String... params) {
-            StringBuffer sb = new StringBuffer();
+        protected RunFramework doInBackground(String... params) {
             try {
-
-                URL workflowurl = new URL(new TavernaPlayerAPI(this.context)
-                        .mPlayerRunFrameworkUrl + params[0]);
-                HttpURLConnection connection = (HttpURLConnection) workflowurl.openConnection();
-                String userpass = tavernaPlayerAPI.getPlayerUserName(this.context) + ":" +
-                        tavernaPlayerAPI.getPlayerUserPassword(this.context);
-                String basicAuth = "Basic " + Base64.encodeToString(userpass.getBytes(Charset
-                        .forName("UTF-8")), Base64
-                        .DEFAULT);
-
-                connection.setRequestProperty("Authorization", basicAuth);
-                connection.setRequestProperty("Accept", "application/json");
-                connection.setRequestMethod("GET");
-                // connection.setDoInput(true);
-                //  connection.setDoOutput(true);
-                connection.connect(); //send request
-                Log.i("RESPONSE Code", "" + connection.getResponseCode());
-                Log.i("RESPONSE Messsage", "" + connection.getResponseMessage());
-                Log.i("Authorization ", "" + connection.getRequestProperty("Authorization"));
-
-                InputStream dis = connection.getInputStream();
-                BufferedReader br = new BufferedReader(new InputStreamReader(dis, "UTF-8"));
-
-                String jsonData = "";
-                while ((jsonData = br.readLine()) != null) {
-                    sb.append(jsonData);
-                }
-                dis.close();
-                br.close();
-                return sb.toString();
-
+                //repeat runs of the same workflow version skip the round trip
+                return TavernaApplication.getRunFrameworkCache().get(params[0], params[1]);
             } catch (IOException ex) {
                 Log.e(TAG, "doInBackground: ", ex);
             }
-            return sb.toString();
+            return null;
         }
 
         @Override
-        protected void onPostExecute(String result) {
+        protected void onPostExecute(final RunFramework framework) {
+            progressDialog.dismiss();
+            if (framework == null) return;
+
             //show the skeleton to the user in a dialog box
             final Context ctx = this.context;
             final LinearLayout ll = new LinearLayout(ctx);
@@ -546,75 +488,50 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
             ll.setOrientation(LinearLayout.VERTICAL);
             sv.addView(ll);
 
-            try {
-                final JSONObject json = new JSONObject(result); //main server response json
-                JSONObject mjson = json.getJSONObject("run"); //main framework response json
-                String name = mjson.getString("name"); //a name that can be configured or edited
-                // for the new run to be created
-                ll.addView(createTextView(ctx, name));
-                final JSONArray attr_array = mjson.getJSONArray("inputs_attributes");
-                for (int i = 0; i < attr_array.length(); i++) {
-                    JSONObject obj = attr_array.getJSONObject(i);
-                    ll.addView(createTextView(ctx, obj.getString("name")));
-                    ll.addView(createEditText(ctx, i));
-                }
-
-                alertDialogBuilder = new AlertDialog.Builder(ctx);
-                alertDialogBuilder.setView(sv);
-                //               alertDialogBuilder.setMessage(result);
-                alertDialogBuilder.setIcon(ctx.getResources().getDrawable(R.mipmap.ic_launcher));
-                alertDialogBuilder.setTitle("New Workflow Run");
-                alertDialogBuilder.setPositiveButton("Execute", new DialogInterface
-                        .OnClickListener() {
-                    @Override
-                    public void onClick(DialogInterface dialogInterface, int i) {
-                        int n = attr_array.length();
-                        for (int j = 0; j < n; j++) {
-                            try {
-                                EditText inputText = (EditText) ll.findViewById(j);
-                                String value = inputText.getText().toString(); //get input entry
-                                // entered by the user
-                                JSONObject jojb = attr_array.getJSONObject(j); //get the input
-                                // attributes provided by the skeleton
-                                jojb.put("value", value); //replace value field in object with
-                                // the entry provided by the user
-                                attr_array.put(j, jojb); //replace the input entry with the new
-                                // name/input json object
-
-                            } catch (JSONException e) {
-                                Log.e(TAG, "onClick: ", e);
-                            }
-
-                        }
-                        try {
-                            json.put("inputs_attributes", attr_array);
-                            Log.i("RUN FRAMEWORK", json.toString(2));
-                            //start a run task to execute the run.
-                            new RunTask(ctx).execute(json.toString());
-                        } catch (JSONException e) {
-                            Log.e(TAG, "onClick: ", e);
-                        } catch (Exception ex) {
-                            Log.e(TAG, "onClick: ", ex);
-                        }
-
-                    }
-                });
-                alertDialogBuilder.setNegativeButton("Cancel", new DialogInterface
-                        .OnClickListener() {
+            //a name that can be configured or edited for the new run to be created
+            ll.addView(createTextView(ctx, framework.getRun().getName()));
+            final List<RunFramework.Input> inputs = framework.getRun().getInputs();
+            for (int i = 0; i < inputs.size(); i++) {
+                ll.addView(createTextView(ctx, inputs.get(i).getName()));
+                ll.addView(createEditText(ctx, i));
+            }
 
-                    @Override
-                    public void onClick(DialogInterface dialogInterface, int i) {
-                        dialogInterface.dismiss();
+            alertDialogBuilder = new AlertDialog.Builder(ctx);
+            alertDialogBuilder.setView(sv);
+            alertDialogBuilder.setIcon(ctx.getResources().getDrawable(R.mipmap.ic_launcher));
+            alertDialogBuilder.setTitle("New Workflow Run");
+            alertDialogBuilder.setPositiveButton("Execute", new DialogInterface
+                    .OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    for (int j = 0; j < inputs.size(); j++) {
+                        EditText inputText = (EditText) ll.findViewById(j);
+                        //replace the value of the input with the entry provided by the user
+                        inputs.get(j).setValue(inputText.getText().toString());
                     }
-                });
+                    //start a run task to execute the run.
+                    new RunTask(ctx).executeOnExecutor(TaskExecutors.network(Priority.HIGH),
+                            framework);
+                }
+            });
+            alertDialogBuilder.setNeutralButton("Batch", new DialogInterface
+                    .OnClickListener() {
 
-                runDialog = alertDialogBuilder.create();
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    BatchRunDialog.show(ctx, framework);
+                }
+            });
+            alertDialogBuilder.setNegativeButton("Cancel", new DialogInterface
+                    .OnClickListener() {
 
-            } catch (JSONException e) {
-                Log.e(TAG, "onPostExecute: ", e);
-            }
-            progressDialog.dismiss();
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    dialogInterface.dismiss();
+                }
+            });
 
+            runDialog = alertDialogBuilder.create();
             runDialog.show();
         }
     }
@@ -633,7 +550,7 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
      * successful run
      * 6- retrieving and displaying run results
      */
-    private class WorkflowProcessTask extends AsyncTask<String, Void, String> {
+    private class WorkflowProcessTask extends AsyncTask<String, Integer, PlayerWorkflow> {
 
         private Context context;
 
@@ -648,77 +565,45 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
         }
 
         @Override
-        protected String doInBackground(String... params) {
-            StringBuffer sb = new StringBuffer(53);
+        protected PlayerWorkflow doInBackground(String... params) {
             try {
-                //prepare connection requests
                 URL workflowurl = new URL(params[0]); //the resource xml file representing the
                 // workflow to be uploaded to the player
-                String playerurl = new TavernaPlayerAPI(this.context).mPlayerBaseUrl +
-                        "workflows.json";
-                TavernaPlayerAPI tavernaPlayerAPI = new TavernaPlayerAPI();
-
-                URL posturl = new URL(playerurl);
-                HttpURLConnection connection = (HttpURLConnection) posturl.openConnection();
                 HttpURLConnection wconn = (HttpURLConnection) workflowurl.openConnection();
                 wconn.setRequestMethod("GET");
-                wconn.setDoOutput(true);
                 wconn.setRequestProperty("Accept", "application/xml");
                 wconn.connect();
 
-                String user = tavernaPlayerAPI.getPlayerUserName(this.context) + ":" +
-                        tavernaPlayerAPI.getPlayerUserPassword(this.context);
-                String basicAuth = "Basic " + Base64.encodeToString(user.getBytes(Charset.forName
-                        ("UTF-8")), Base64
-                        .DEFAULT);
-                //read the file from remote resource and encode the stream with a base64 algorithm
-                BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(wconn
-                        .getInputStream(), "UTF-8"));
-                String str = "";
-                while ((str = bufferedReader.readLine()) != null) {
-                    sb.append(str); //in this string builder we have read the workflow( as
-                    // .t2flow or .xml) workflow from remote resource. Now we need to post that to
-                    // the player.
-                }
-                bufferedReader.close();
-                wconn.disconnect();
-
-                String data = "{\"document\":\"data:application/octet-stream;base64," +
-                        Base64.encodeToString(sb.toString().getBytes("UTF-8"), Base64.URL_SAFE |
-                                Base64.NO_WRAP).replace('-', '+') + "\"}";
-                String post = "{\"workflow\":" + data + "}";
-                //clear sb so that we can use it again to fetch results from this post request
-                sb.delete(0, sb.length() - 1);
-                Log.d(TAG, "BODY=>" + post);
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Authorization", basicAuth);
-                connection.setRequestProperty("Accept", "*/*");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setRequestProperty("Content-Encoding", "UTF-8");
-                connection.setUseCaches(false);
-                connection.setDoOutput(true);
-                connection.connect(); //send request
-
-                DataOutputStream dos = new DataOutputStream(connection.getOutputStream());
-
-                dos.writeBytes(post); //write post data which is a formatted json data
-                // representing body of workflow
-
-                dos.flush();
-                dos.close();
-
-                InputStream dis = connection.getInputStream();
-                BufferedReader br = new BufferedReader(new InputStreamReader(dis, "UTF-8"));
-                while ((str = br.readLine()) != null) {
-                    sb.append(str);
+                //the workflow is streamed from myExperiment to the player and encoded on the
+                // way, it is never held in memory as a whole
+                try {
+                    return WorkflowUploader.upload(wconn.getInputStream(),
+                            wconn.getContentLength(), new WorkflowUploader.ProgressListener() {
+                                private int mPercent = -1;
+
+                                @Override
+                                public void onProgress(long uploaded, long total) {
+                                    int percent = total > 0 ? (int) (uploaded * 100 / total) : -1;
+                                    if (percent != mPercent) {
+                                        mPercent = percent;
+                                        publishProgress(percent);
+                                    }
+                                }
+                            });
+                } finally {
+                    wconn.disconnect();
                 }
-                connection.disconnect();
             } catch (IOException e) {
                 Log.e(TAG, "doInBackground: ", e);
-                sb.append("Error reading remote workflow. Please try again later");
+                return null;
             }
+        }
 
-            return sb.toString();
+        @Override
+        protected void onProgressUpdate(Integer... values) {
+            if (values[0] >= 0) {
+                progressDialog.setMessage("Uploading Workflow ... " + values[0] + "%");
+            }
         }
 
         /**
@@ -727,20 +612,16 @@ public class WorkflowdetailFragment extends Fragment implements View.OnClickList
          * can be used to generate a run from thw workflow. A run is started that would fetch and
          * build a sample UI for a workflow run to be executed
          *
-         * @param s the json result that describes the uploaded workflow
+         * @param workflow the uploaded workflow, or null if the upload failed
          */
         @Override
-        protected void onPostExecute(String s) {
+        protected void onPostExecute(PlayerWorkflow workflow) {
             progressDialog.dismiss();
-            s = s.substring(1, s.length());
-            try {
-                JSONObject workflowJson = new JSONObject(s);
-                new WorkflowRunTask(getActivity()).execute(workflowJson.getString("id"));
-
-            } catch (JSONException e) {
-                Log.e(TAG, "onPostExecute: ", e);
-            }
+            if (workflow == null) return;
 
+            new WorkflowRunTask(getActivity()).executeOnExecutor(
+                    TaskExecutors.network(Priority.HIGH), String.valueOf(workflow.getId()),
+                    workflow.getUpdatedAt());
         }
     }
 
@@ -58,8 +58,8 @@ public class User {
     protected String details_uri;
     protected List<Workflow> user_workflows; //a list of workflows owned by this user
     private String avatar_url;
-    private String row_id; //identifies the row  to which this user is being loaded in, in the
-    // workflow listview
+    private String row_id; //details uri of the workflow whose row this user is being loaded
+    // in, in the workflow listview; dropped once the row is rebound
     private WorkflowAdapter.ViewHolder userViewHolder;
 
     public User(String rid, WorkflowAdapter.ViewHolder vh) {
@@ -1,13 +1,12 @@
 package org.apache.taverna.mobile.ui.adapter;
 
 import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
 
 import org.apache.taverna.mobile.R;
 import org.apache.taverna.mobile.data.model.Workflow;
+import org.apache.taverna.mobile.utils.PreviewImageLoader;
 
 import android.content.Context;
-import android.net.Uri;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -65,14 +64,17 @@ public class FavouriteWorkflowsAdapter extends RecyclerView.Adapter<RecyclerView
             ((ViewHolder) holder).tvType.setText(workflow.getType().getContent());
             ((ViewHolder) holder).tvUploader.setText(workflow.getUploader().getContent());
 
-            Uri uri = Uri.parse(workflow.getPreviewUri());
+            PreviewImageLoader.loadListPreview(context, workflow.getPreviewUri(),
+                    ((ViewHolder) holder).ivWorkflowImage);
+        }
+    }
 
-            Glide.with(context)
-                    .load(uri)
-                    .diskCacheStrategy(DiskCacheStrategy.SOURCE)
-                    .placeholder(R.drawable.placeholder)
-                    .error(R.drawable.placeholder)
-                    .into(((ViewHolder) holder).ivWorkflowImage);
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        //stops the download and decode of a preview nobody will see
+        if (holder instanceof ViewHolder) {
+            Glide.clear(((ViewHolder) holder).ivWorkflowImage);
         }
     }
 
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.ui.adapter;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.Target;
+
+import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.data.model.Workflow;
+import org.apache.taverna.mobile.utils.PreviewImageLoader;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.List;
+
+/**
+ * Fetches and decodes the previews of the rows about to scroll into view, so they are already in
+ * Glide's memory cache when bound. The look ahead covers the rows the list will scroll past in
+ * the next {@link #LOOK_AHEAD_MS} ms at its current speed, which is measured over a short window
+ * of scroll callbacks since a single frame moves far less than a row. It follows the scroll
+ * direction and preloads that fall out of range are cancelled.
+ */
+public class PreviewPreloadScrollListener extends RecyclerView.OnScrollListener {
+
+    private static final int MIN_PRELOAD = 2;
+
+    private static final int MAX_PRELOAD = 10;
+
+    private static final long LOOK_AHEAD_MS = 1000;
+
+    //scroll distance is summed over this long before the speed is updated
+    private static final long VELOCITY_WINDOW_MS = 150;
+
+    private final Context mContext;
+
+    private final LinearLayoutManager mLayoutManager;
+
+    private final List<Workflow> mWorkflowList;
+
+    private final SparseArray<Target<?>> mPreloads = new SparseArray<>();
+
+    private int mPreviewWidth;
+
+    private int mPreviewHeight;
+
+    private long mWindowStart;
+
+    private int mWindowDy;
+
+    private float mRowsPerSecond;
+
+    public PreviewPreloadScrollListener(Context context, LinearLayoutManager layoutManager,
+                                        List<Workflow> workflowList) {
+        mContext = context;
+        mLayoutManager = layoutManager;
+        mWorkflowList = workflowList;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        super.onScrolled(recyclerView, dx, dy);
+
+        if (dy == 0 || !measurePreview(recyclerView)) return;
+
+        int first = mLayoutManager.findFirstVisibleItemPosition();
+        int last = mLayoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) return;
+
+        updateVelocity(dy, recyclerView.getChildAt(0).getHeight());
+        int ahead = Math.min(MAX_PRELOAD,
+                MIN_PRELOAD + (int) Math.ceil(mRowsPerSecond * LOOK_AHEAD_MS / 1000f));
+
+        int from;
+        int to;
+        if (dy > 0) {
+            from = last + 1;
+            to = Math.min(mWorkflowList.size() - 1, last + ahead);
+        } else {
+            from = Math.max(0, first - ahead);
+            to = first - 1;
+        }
+
+        cancelOutside(from, to);
+        for (int position = from; position <= to; position++) {
+            preload(position);
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        super.onScrollStateChanged(recyclerView, newState);
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            mWindowStart = 0;
+            mWindowDy = 0;
+            mRowsPerSecond = 0;
+        }
+    }
+
+    private void updateVelocity(int dy, int rowHeight) {
+        long now = SystemClock.uptimeMillis();
+        //a change of direction starts a new window
+        if (mWindowStart == 0 || (mWindowDy != 0 && (mWindowDy > 0) != (dy > 0))) {
+            mWindowStart = now;
+            mWindowDy = 0;
+        }
+        mWindowDy += dy;
+
+        long elapsed = now - mWindowStart;
+        if (elapsed >= VELOCITY_WINDOW_MS) {
+            mRowsPerSecond = Math.abs(mWindowDy) * 1000f / elapsed / Math.max(1, rowHeight);
+            mWindowStart = now;
+            mWindowDy = 0;
+        }
+    }
+
+    /**
+     * Cancels every outstanding preload, call when the list is replaced or the view destroyed.
+     */
+    public void cancelAll() {
+        for (int i = 0; i < mPreloads.size(); i++) {
+            Glide.clear(mPreloads.valueAt(i));
+        }
+        mPreloads.clear();
+    }
+
+    private void preload(int position) {
+        if (mPreloads.get(position) != null) return;
+
+        Workflow workflow = mWorkflowList.get(position);
+        if (workflow == null || workflow.getPreviewUri() == null) return;
+
+        mPreloads.put(position, PreviewImageLoader.preloadListPreview(mContext,
+                workflow.getPreviewUri(), mPreviewWidth, mPreviewHeight));
+    }
+
+    private void cancelOutside(int from, int to) {
+        for (int i = mPreloads.size() - 1; i >= 0; i--) {
+            int position = mPreloads.keyAt(i);
+            if (position < from || position > to) {
+                Glide.clear(mPreloads.valueAt(i));
+                mPreloads.removeAt(i);
+            }
+        }
+    }
+
+    //preloads must use the size the rows request or they land under a different cache key
+    private boolean measurePreview(RecyclerView recyclerView) {
+        if (mPreviewWidth > 0 && mPreviewHeight > 0) return true;
+
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            View preview = recyclerView.getChildAt(i).findViewById(R.id.ivWorkflowImage);
+            if (preview != null && preview.getWidth() > 0 && preview.getHeight() > 0) {
+                mPreviewWidth = preview.getWidth();
+                mPreviewHeight = preview.getHeight();
+                return true;
+            }
+        }
+        return false;
+    }
+}
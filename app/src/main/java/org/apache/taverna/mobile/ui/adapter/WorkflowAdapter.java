@@ -1,13 +1,14 @@
 package org.apache.taverna.mobile.ui.adapter;
 
 import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
 
 import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.local.FavouriteWorkflowIds;
 import org.apache.taverna.mobile.data.model.Workflow;
+import org.apache.taverna.mobile.utils.PreviewImageLoader;
 
 import android.content.Context;
-import android.net.Uri;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -32,9 +33,12 @@ public class WorkflowAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
 
     private final Context context;
 
+    private final FavouriteWorkflowIds mFavouriteWorkflowIds;
+
     public WorkflowAdapter(List<Workflow> mWorkflowList, Context context) {
         this.mWorkflowList = mWorkflowList;
         this.context = context;
+        this.mFavouriteWorkflowIds = TavernaApplication.getFavouriteWorkflowIds();
 
     }
 
@@ -75,15 +79,20 @@ public class WorkflowAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
             ((ViewHolder) holder).tvTitle.setText(workflow.getTitle());
             ((ViewHolder) holder).tvType.setText(workflow.getType().getContent());
             ((ViewHolder) holder).tvUploader.setText(workflow.getUploader().getContent());
+            ((ViewHolder) holder).ivFavourite.setVisibility(
+                    mFavouriteWorkflowIds.contains(workflow.getId()) ? View.VISIBLE : View.GONE);
 
-            Uri uri = Uri.parse(workflow.getPreviewUri());
+            PreviewImageLoader.loadListPreview(context, workflow.getPreviewUri(),
+                    ((ViewHolder) holder).ivWorkflowImage);
+        }
+    }
 
-            Glide.with(context)
-                    .load(uri)
-                    .diskCacheStrategy(DiskCacheStrategy.SOURCE)
-                    .placeholder(R.drawable.placeholder)
-                    .error(R.drawable.placeholder)
-                    .into(((ViewHolder) holder).ivWorkflowImage);
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        //stops the download and decode of a preview nobody will see
+        if (holder instanceof ViewHolder) {
+            Glide.clear(((ViewHolder) holder).ivWorkflowImage);
         }
     }
 
@@ -116,6 +125,9 @@ public class WorkflowAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         @BindView(R.id.ivWorkflowImage)
         ImageView ivWorkflowImage;
 
+        @BindView(R.id.ivFavourite)
+        ImageView ivFavourite;
+
         public ViewHolder(View itemView) {
             super(itemView);
             ButterKnife.bind(this, itemView);
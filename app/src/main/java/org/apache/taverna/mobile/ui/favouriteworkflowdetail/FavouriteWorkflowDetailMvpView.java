@@ -20,7 +20,6 @@ package org.apache.taverna.mobile.ui.favouriteworkflowdetail;
 
 
 import org.apache.taverna.mobile.data.model.License;
-import org.apache.taverna.mobile.data.model.User;
 import org.apache.taverna.mobile.data.model.Workflow;
 import org.apache.taverna.mobile.ui.base.MvpView;
 
@@ -30,7 +29,7 @@ public interface FavouriteWorkflowDetailMvpView extends MvpView {
 
     void showWorkflowDetail(Workflow workflow);
 
-    void setImage(User user);
+    void setImage(String avatarUrl);
 
     void showErrorSnackBar(String error);
 
@@ -20,7 +20,6 @@ package org.apache.taverna.mobile.ui.favouriteworkflowdetail;
 
 import org.apache.taverna.mobile.data.DataManager;
 import org.apache.taverna.mobile.data.model.License;
-import org.apache.taverna.mobile.data.model.User;
 import org.apache.taverna.mobile.data.model.Workflow;
 import org.apache.taverna.mobile.ui.base.BasePresenter;
 
@@ -91,10 +90,10 @@ public class FavouriteWorkflowDetailPresenter extends
 
         getMvpView().showProgressbar(true);
 
-        mCompositeSubscription.add(mDataManager.getUserDetail(id, getUserQueryOptions())
+        mCompositeSubscription.add(mDataManager.getUserAvatarUrl(id)
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribeOn(Schedulers.io())
-                .subscribe(new Observer<User>() {
+                .subscribe(new Observer<String>() {
                     @Override
                     public void onCompleted() {
                         getMvpView().showProgressbar(false);
@@ -108,8 +107,8 @@ public class FavouriteWorkflowDetailPresenter extends
                     }
 
                     @Override
-                    public void onNext(User user) {
-                        getMvpView().setImage(user);
+                    public void onNext(String avatarUrl) {
+                        getMvpView().setImage(avatarUrl);
                     }
                 }));
     }
@@ -198,13 +197,6 @@ public class FavouriteWorkflowDetailPresenter extends
     }
 
 
-    private Map<String, String> getUserQueryOptions() {
-
-        Map<String, String> option = new HashMap<>();
-        option.put("elements", "avatar");
-        return option;
-    }
-
     private Map<String, String> getLicenceQueryOptions() {
 
         Map<String, String> option = new HashMap<>();
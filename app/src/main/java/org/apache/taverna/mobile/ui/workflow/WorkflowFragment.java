@@ -24,6 +24,7 @@ import org.apache.taverna.mobile.data.DataManager;
 import org.apache.taverna.mobile.data.model.Workflow;
 import org.apache.taverna.mobile.data.model.Workflows;
 import org.apache.taverna.mobile.ui.adapter.EndlessRecyclerOnScrollListener;
+import org.apache.taverna.mobile.ui.adapter.PreviewPreloadScrollListener;
 import org.apache.taverna.mobile.ui.adapter.RecyclerItemClickListner;
 import org.apache.taverna.mobile.ui.adapter.WorkflowAdapter;
 import org.apache.taverna.mobile.ui.workflowdetail.WorkflowDetailActivity;
@@ -69,6 +70,8 @@ public class WorkflowFragment extends Fragment implements WorkflowMvpView,
 
     private WorkflowAdapter mWorkflowAdapter;
 
+    private PreviewPreloadScrollListener mPreviewPreloader;
+
     private ConnectionInfo mConnectionInfo;
     private int mPageNumber = 1;
     private List<Workflow> mWorkflowList;
@@ -123,6 +126,10 @@ public class WorkflowFragment extends Fragment implements WorkflowMvpView,
             }
         });
 
+        mPreviewPreloader = new PreviewPreloadScrollListener(getContext(), layoutManager,
+                mWorkflowList);
+        mRecyclerView.addOnScrollListener(mPreviewPreloader);
+
         mSwipeRefresh.setColorSchemeResources(R.color.colorAccent, R.color.colorAccent, R.color
                 .colorPrimary);
         mSwipeRefresh.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
@@ -185,6 +192,7 @@ public class WorkflowFragment extends Fragment implements WorkflowMvpView,
         if (mSwipeRefresh.isRefreshing()) {
             mSwipeRefresh.setRefreshing(false);
             mWorkflowList.clear();
+            mPreviewPreloader.cancelAll();
         }
 
         mWorkflowList.addAll(workflows.getWorkflowList());
@@ -200,9 +208,17 @@ public class WorkflowFragment extends Fragment implements WorkflowMvpView,
         }
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        //favourite state may have changed on the detail screen
+        mWorkflowAdapter.notifyDataSetChanged();
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        mPreviewPreloader.cancelAll();
         mWorkflowPresenter.detachView();
     }
 
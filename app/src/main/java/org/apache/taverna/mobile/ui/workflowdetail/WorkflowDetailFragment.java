@@ -19,15 +19,15 @@
 package org.apache.taverna.mobile.ui.workflowdetail;
 
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
-
 import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.customviews.WorkflowPreviewImageView;
 import org.apache.taverna.mobile.data.DataManager;
 import org.apache.taverna.mobile.data.model.Workflow;
 import org.apache.taverna.mobile.data.model.License;
-import org.apache.taverna.mobile.data.model.User;
+import org.apache.taverna.mobile.utils.AvatarImageLoader;
 import org.apache.taverna.mobile.utils.ConnectionInfo;
+import org.apache.taverna.mobile.utils.PreviewImageLoader;
+import org.apache.taverna.mobile.utils.WorkflowDiagramLoader;
 
 import android.app.ProgressDialog;
 import android.os.Bundle;
@@ -75,6 +75,12 @@ public class WorkflowDetailFragment extends Fragment implements WorkflowDetailMv
     @BindView(R.id.tvType)
     TextView type;
 
+    @BindView(R.id.tvDiagramTitle)
+    TextView diagramTitle;
+
+    @BindView(R.id.ivWorkflowDiagram)
+    WorkflowPreviewImageView workflowDiagram;
+
     @BindView(R.id.tvDescription)
     WebView description;
 
@@ -211,13 +217,16 @@ public class WorkflowDetailFragment extends Fragment implements WorkflowDetailMv
         type.setText(workflow.getType().getContent());
         title.setText(workflow.getTitle());
         description.loadData(workflow.getDescription(), "text/html", "utf-8");
+        getFavouriteIcon(dataManager.isFavouriteWorkflow(id));
 
-        Glide.with(getContext())
-                .load(workflow.getPreviewUri())
-                .diskCacheStrategy(DiskCacheStrategy.SOURCE)
-                .placeholder(R.drawable.placeholder)
-                .error(R.drawable.placeholder)
-                .into(workflowImage);
+        PreviewImageLoader.loadDetailPreview(getContext(), workflow.getPreviewUri(),
+                workflowImage);
+
+        if (workflow.getSvgUri() != null) {
+            diagramTitle.setVisibility(View.VISIBLE);
+            workflowDiagram.setVisibility(View.VISIBLE);
+            WorkflowDiagramLoader.loadZoomableDiagram(getContext(), workflow, workflowDiagram);
+        }
 
         if (workflow.getLicenseType().getId() == null) {
             licenceId = "";
@@ -228,14 +237,9 @@ public class WorkflowDetailFragment extends Fragment implements WorkflowDetailMv
     }
 
     @Override
-    public void setImage(User user) {
-
-        Glide.with(getContext())
-                .load(user.getAvatar().getResource())
-                .diskCacheStrategy(DiskCacheStrategy.SOURCE)
-                .placeholder(R.drawable.placeholder)
-                .error(R.drawable.placeholder)
-                .into(uploaderImage);
+    public void setImage(String avatarUrl) {
+
+        AvatarImageLoader.loadAvatar(getContext(), avatarUrl, uploaderImage);
 
     }
 
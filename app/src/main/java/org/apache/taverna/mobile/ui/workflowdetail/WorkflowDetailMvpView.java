@@ -21,7 +21,6 @@ package org.apache.taverna.mobile.ui.workflowdetail;
 
 import org.apache.taverna.mobile.data.model.Workflow;
 import org.apache.taverna.mobile.data.model.License;
-import org.apache.taverna.mobile.data.model.User;
 import org.apache.taverna.mobile.ui.base.MvpView;
 
 public interface WorkflowDetailMvpView extends MvpView {
@@ -30,7 +29,7 @@ public interface WorkflowDetailMvpView extends MvpView {
 
     void showWorkflowDetail(Workflow workflow);
 
-    void setImage(User user);
+    void setImage(String avatarUrl);
 
     void showErrorSnackBar(String error);
 
@@ -20,7 +20,6 @@ package org.apache.taverna.mobile.ui.workflowdetail;
 
 import org.apache.taverna.mobile.data.DataManager;
 import org.apache.taverna.mobile.data.model.License;
-import org.apache.taverna.mobile.data.model.User;
 import org.apache.taverna.mobile.data.model.Workflow;
 import org.apache.taverna.mobile.ui.base.BasePresenter;
 
@@ -86,10 +85,10 @@ public class WorkflowDetailPresenter extends BasePresenter<WorkflowDetailMvpView
 
         getMvpView().showProgressbar(true);
 
-        mCompositeSubscription.add(mDataManager.getUserDetail(id, getUserQueryOptions())
+        mCompositeSubscription.add(mDataManager.getUserAvatarUrl(id)
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribeOn(Schedulers.io())
-                .subscribe(new Observer<User>() {
+                .subscribe(new Observer<String>() {
                     @Override
                     public void onCompleted() {
                         getMvpView().showProgressbar(false);
@@ -103,8 +102,8 @@ public class WorkflowDetailPresenter extends BasePresenter<WorkflowDetailMvpView
                     }
 
                     @Override
-                    public void onNext(User user) {
-                        getMvpView().setImage(user);
+                    public void onNext(String avatarUrl) {
+                        getMvpView().setImage(avatarUrl);
                     }
                 }));
     }
@@ -200,13 +199,6 @@ public class WorkflowDetailPresenter extends BasePresenter<WorkflowDetailMvpView
         return option;
     }
 
-    private Map<String, String> getUserQueryOptions() {
-
-        Map<String, String> option = new HashMap<>();
-        option.put("elements", "avatar");
-        return option;
-    }
-
     private Map<String, String> getLicenceQueryOptions() {
 
         Map<String, String> option = new HashMap<>();
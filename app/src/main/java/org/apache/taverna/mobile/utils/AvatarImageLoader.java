@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+
+import org.apache.taverna.mobile.R;
+
+import android.content.Context;
+import android.widget.ImageView;
+
+/**
+ * Loads uploader avatars. Only the circle cropped bitmap at the size of the target view is
+ * cached, both in Glide's memory cache and on disk, so every screen showing the same avatar at
+ * the same size shares one entry. Avatar urls come from
+ * {@link org.apache.taverna.mobile.data.DataManager#getUserAvatarUrl(String)}.
+ */
+public final class AvatarImageLoader {
+
+    private AvatarImageLoader() {
+    }
+
+    public static void loadAvatar(Context context, String avatarUrl, ImageView target) {
+        Glide.with(context)
+                .load(avatarUrl)
+                .asBitmap()
+                .diskCacheStrategy(DiskCacheStrategy.RESULT)
+                .transform(new CircleTransformation(context))
+                .placeholder(R.drawable.placeholder)
+                .error(R.drawable.placeholder)
+                .into(target);
+    }
+}
@@ -24,58 +24,54 @@ package org.apache.taverna.mobile.utils;
  * under the License.
  */
 
-import com.thebuzzmedia.sjxp.rule.IRule;
-
 import org.apache.taverna.mobile.adapters.WorkflowAdapter;
+import org.apache.taverna.mobile.data.DataManager;
+import org.apache.taverna.mobile.fragments.WorkflowItemFragment;
 import org.apache.taverna.mobile.tavernamobile.User;
-import org.apache.taverna.mobile.utils.xmlparsers.AvatarXMLParser;
-import org.apache.taverna.mobile.utils.xmlparsers.MyExperimentXmlParserRules;
 
+import android.net.Uri;
 import android.os.AsyncTask;
 import android.util.Log;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
-
 /**
- * initiates a process to fetch and parse uploader information so as to retrieve the id, name and
- * avatar link
+ * initiates a process to fetch the avatar link of an uploader through the shared avatar cache in
+ * {@link DataManager#getUserAvatarUrl(String)}, keyed by the user id in the details uri
  * Created by Larry AKah on 6/29/15.
  */
 public class AvatarLoader extends AsyncTask<String, Void, Void> {
     private static final String TAG = "AvatarLoader";
+    private static DataManager sDataManager;
     WorkflowAdapter.ViewHolder vh;
 
     public AvatarLoader(WorkflowAdapter.ViewHolder userViewHolder) {
         this.vh = userViewHolder;
     }
 
+    private static synchronized DataManager getDataManager() {
+        if (sDataManager == null) {
+            sDataManager = new DataManager();
+        }
+        return sDataManager;
+    }
+
     @Override
     protected Void doInBackground(String... strings) {
-        URL url = null;
-        HttpURLConnection connection = null;
-        try {
-
-            url = new URL(strings[0]);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setDoInput(true);
-            connection.connect();
-            InputStream input = connection.getInputStream();
-            IRule avatarRule = new MyExperimentXmlParserRules.AuthorRule(IRule.Type.ATTRIBUTE,
-                    "/user/avatar", "resource", "uri", "id");
-            IRule avatarName = new MyExperimentXmlParserRules.AuthorRule(IRule.Type.CHARACTER,
-                    "/user/name");
-            AvatarXMLParser avatarXMLParser = new AvatarXMLParser(new IRule[]{avatarRule,
-                    avatarName});
+        //strings[1] is the details uri of the workflow the row was bound to when this started
+        if (isCancelled() || !vh.isBoundTo(strings[1])) return null;
 
-            avatarXMLParser.parse(input, new User(strings[1], this.vh));
+        String userId = Uri.parse(strings[0]).getQueryParameter("id");
+        if (userId == null) {
+            Log.w(TAG, "doInBackground: no user id in " + strings[0]);
+            return null;
+        }
 
-        } catch (MalformedURLException e) {
-            Log.e(TAG, "doInBackground: ", e);
-        } catch (IOException e) {
+        try {
+            User author = new User(strings[1], this.vh);
+            author.setId(userId);
+            author.setAvatarUrl(getDataManager().getUserAvatarUrl(userId).toBlocking().first());
+            if (isCancelled()) return null;
+            WorkflowItemFragment.updateAvatar(author);
+        } catch (RuntimeException e) {
             Log.e(TAG, "doInBackground: ", e);
         }
 
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.data.model.RunFramework;
+
+import android.app.AlertDialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.text.InputType;
+import android.util.Log;
+import android.view.Gravity;
+import android.widget.EditText;
+import android.widget.Toast;
+
+import java.util.List;
+
+import rx.Subscriber;
+import rx.android.schedulers.AndroidSchedulers;
+
+/**
+ * Asks for a table of input values, one row per run, and hands it to
+ * {@link BatchRunSubmitter}.
+ */
+public final class BatchRunDialog {
+
+    private static final String LOG_TAG = BatchRunDialog.class.getSimpleName();
+
+    private BatchRunDialog() {
+    }
+
+    /**
+     * @param framework run framework as returned by {@code runs/new}
+     */
+    public static void show(final Context context, final RunFramework framework) {
+        final String name = framework.getRun().getName();
+        List<RunFramework.Input> inputs = framework.getRun().getInputs();
+        final int columns = inputs.size();
+        StringBuilder hint = new StringBuilder();
+        for (int i = 0; i < columns; i++) {
+            if (i > 0) hint.append(", ");
+            hint.append(inputs.get(i).getName());
+        }
+
+        final EditText table = new EditText(context);
+        table.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_MULTI_LINE);
+        table.setGravity(Gravity.TOP);
+        table.setMinLines(4);
+        table.setHint(hint);
+
+        new AlertDialog.Builder(context)
+                .setIcon(R.mipmap.ic_launcher)
+                .setTitle("Batch Workflow Runs")
+                .setMessage("One run per line, values separated by commas or tabs")
+                .setView(table)
+                .setPositiveButton("Execute", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialogInterface, int i) {
+                        List<List<String>> rows =
+                                BatchRunSubmitter.parseInputTable(table.getText().toString());
+                        for (List<String> row : rows) {
+                            if (row.size() != columns) {
+                                Toast.makeText(context, "Every line needs " + columns
+                                        + " values", Toast.LENGTH_LONG).show();
+                                return;
+                            }
+                        }
+                        if (!rows.isEmpty()) {
+                            submit(context, framework, name, rows);
+                        }
+                    }
+                })
+                .setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialogInterface, int i) {
+                        dialogInterface.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    private static void submit(final Context context, RunFramework framework, String name,
+                               final List<List<String>> rows) {
+        final BatchRunSubmitter.Tracker tracker =
+                new BatchRunSubmitter.Tracker(context, name, rows.size());
+        Toast.makeText(context, "Starting " + rows.size() + " runs", Toast.LENGTH_SHORT).show();
+
+        new BatchRunSubmitter(context).submit(framework, rows)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Subscriber<BatchRunSubmitter.Result>() {
+                    @Override
+                    public void onCompleted() {
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        Log.e(LOG_TAG, "submit: ", e);
+                    }
+
+                    @Override
+                    public void onNext(BatchRunSubmitter.Result result) {
+                        if (!result.isSuccessful()) {
+                            Log.w(LOG_TAG, "Run for line " + (result.getRow() + 1)
+                                    + " not created", result.getError());
+                        }
+                        tracker.onResult(result);
+                    }
+                });
+    }
+}
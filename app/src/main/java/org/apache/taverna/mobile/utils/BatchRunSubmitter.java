@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import com.google.gson.Gson;
+
+import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.model.PlayerRun;
+import org.apache.taverna.mobile.data.model.RunFramework;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.v4.app.NotificationCompat;
+
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.adapter.rxjava.HttpException;
+import rx.Observable;
+import rx.exceptions.Exceptions;
+import rx.functions.Func1;
+import rx.functions.Func2;
+import rx.schedulers.Schedulers;
+
+/**
+ * Creates one Taverna Player run per row of an input table, for parameter sweeps. Runs are
+ * posted through the Player service, at most {@link #getConcurrency()} at a time, and failures
+ * that leave no run behind on the Player are retried with a growing delay. {@link Tracker}
+ * follows the created runs together through {@link RunStatusMonitor} and sums them up in one
+ * notification.
+ */
+public class BatchRunSubmitter {
+
+    public static final String PREF_CONCURRENCY = "pref_batch_run_concurrency";
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    /**
+     * Outcome of one row of the input table.
+     */
+    public static class Result {
+
+        private final int mRow;
+
+        private final int mRunId;
+
+        private final Throwable mError;
+
+        Result(int row, int runId, Throwable error) {
+            mRow = row;
+            mRunId = runId;
+            mError = error;
+        }
+
+        public int getRow() {
+            return mRow;
+        }
+
+        /**
+         * @return id of the created run, or -1 if it could not be created
+         */
+        public int getRunId() {
+            return mRunId;
+        }
+
+        public Throwable getError() {
+            return mError;
+        }
+
+        public boolean isSuccessful() {
+            return mError == null;
+        }
+    }
+
+    private final SharedPreferences mPreferences;
+
+    public BatchRunSubmitter(Context context) {
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(
+                context.getApplicationContext());
+    }
+
+    /**
+     * @return how many runs are posted at the same time, from the settings
+     */
+    public int getConcurrency() {
+        try {
+            return Math.max(1, Integer.parseInt(mPreferences.getString(PREF_CONCURRENCY,
+                    String.valueOf(DEFAULT_CONCURRENCY)).trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_CONCURRENCY;
+        }
+    }
+
+    /**
+     * Splits an input table into rows of values. Rows are lines, blank lines are skipped, and
+     * values are separated by tabs if the table contains any and by commas otherwise.
+     */
+    public static List<List<String>> parseInputTable(String table) {
+        String separator = table.indexOf('\t') >= 0 ? "\t" : ",";
+        List<List<String>> rows = new ArrayList<>();
+        for (String line : table.split("\r?\n")) {
+            if (line.trim().isEmpty()) continue;
+
+            List<String> row = new ArrayList<>();
+            for (String value : Arrays.asList(line.split(separator, -1))) {
+                row.add(value.trim());
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Posts one run per row, each row giving the values of the framework's inputs in order.
+     * Emits a result per row as runs are created, in no particular order, and completes once
+     * every row has been tried.
+     *
+     * @param framework run framework as returned by {@code runs/new}
+     */
+    public Observable<Result> submit(final RunFramework framework,
+                                     final List<List<String>> rows) {
+        return Observable.range(0, rows.size())
+                .flatMap(new Func1<Integer, Observable<Result>>() {
+                    @Override
+                    public Observable<Result> call(final Integer row) {
+                        //fetched per row, the service is replaced when the Player url changes
+                        return TavernaApplication.getPlayerApiManager().getPlayerService()
+                                .createRun(buildRun(framework, rows.get(row)))
+                                .subscribeOn(Schedulers.io())
+                                .retryWhen(new RetryWithDelay())
+                                .map(new Func1<PlayerRun, Result>() {
+                                    @Override
+                                    public Result call(PlayerRun run) {
+                                        return new Result(row, (int) run.getId(), null);
+                                    }
+                                })
+                                .onErrorReturn(new Func1<Throwable, Result>() {
+                                    @Override
+                                    public Result call(Throwable throwable) {
+                                        return new Result(row, -1, throwable);
+                                    }
+                                });
+                    }
+                }, getConcurrency());
+    }
+
+    //the framework as the single run form would post it, with the values of one row filled in
+    private static RunFramework buildRun(RunFramework framework, List<String> values) {
+        Gson gson = TavernaApplication.getPlayerApiManager().getGson();
+        RunFramework run = gson.fromJson(gson.toJson(framework), RunFramework.class);
+        List<RunFramework.Input> inputs = run.getRun().getInputs();
+        for (int i = 0; i < inputs.size() && i < values.size(); i++) {
+            inputs.get(i).setValue(values.get(i));
+        }
+        return run;
+    }
+
+    /**
+     * Resubscribes after failures that cannot have created the run, waiting twice as long every
+     * time.
+     */
+    private static class RetryWithDelay
+            implements Func1<Observable<? extends Throwable>, Observable<?>> {
+
+        @Override
+        public Observable<?> call(Observable<? extends Throwable> errors) {
+            return errors.zipWith(Observable.range(1, MAX_ATTEMPTS),
+                    new Func2<Throwable, Integer, Integer>() {
+                        @Override
+                        public Integer call(Throwable throwable, Integer attempt) {
+                            if (attempt == MAX_ATTEMPTS || !isTransient(throwable)) {
+                                throw Exceptions.propagate(throwable);
+                            }
+                            return attempt;
+                        }
+                    })
+                    .flatMap(new Func1<Integer, Observable<Long>>() {
+                        @Override
+                        public Observable<Long> call(Integer attempt) {
+                            return Observable.timer(RETRY_DELAY_MILLIS << (attempt - 1),
+                                    TimeUnit.MILLISECONDS);
+                        }
+                    });
+        }
+
+        //the post is not idempotent: a timeout or a dropped connection may come after the Player
+        //created the run, so only failures before the request was sent and an unavailable
+        //server are tried again, anything else would risk a duplicate run in the sweep
+        private static boolean isTransient(Throwable throwable) {
+            return throwable instanceof ConnectException
+                    || throwable instanceof UnknownHostException
+                    || throwable instanceof HttpException
+                    && ((HttpException) throwable).code() == HttpURLConnection.HTTP_UNAVAILABLE;
+        }
+    }
+
+    /**
+     * Follows the runs of one batch and keeps a single notification with their counts by state.
+     * Must be used on the main thread.
+     */
+    public static class Tracker implements RunStatusMonitor.Listener {
+
+        private static final String NOTIFICATION_TAG = "batch";
+
+        private final Context mContext;
+
+        private final String mName;
+
+        private final int mTotal;
+
+        private final int mNotificationId = (int) System.currentTimeMillis();
+
+        private final Map<Integer, String> mStates = new HashMap<>();
+
+        private int mRejected;
+
+        public Tracker(Context context, String name, int total) {
+            mContext = context.getApplicationContext();
+            mName = name;
+            mTotal = total;
+        }
+
+        public void onResult(Result result) {
+            if (result.isSuccessful()) {
+                mStates.put(result.getRunId(), "pending");
+                TavernaApplication.getRunStatusMonitor().watch(result.getRunId(), this);
+            } else {
+                mRejected++;
+            }
+            notifyCounts();
+        }
+
+        @Override
+        public void onRunChanged(PlayerRun run) {
+            int runId = (int) run.getId();
+            if (!mStates.containsKey(runId)) return;
+
+            String state = RunStatusMonitor.stateOf(run);
+            mStates.put(runId, state);
+            if (RunStatusMonitor.isTerminal(state)) {
+                TavernaApplication.getRunStatusMonitor().unwatch(runId, this);
+            }
+            notifyCounts();
+        }
+
+        @Override
+        public void onRunGone(int runId) {
+            if (!mStates.containsKey(runId)) return;
+
+            //a run deleted on the Player will not finish, so it counts as failed
+            mStates.put(runId, "failed");
+            notifyCounts();
+        }
+
+        private void notifyCounts() {
+            int finished = 0;
+            int failed = mRejected;
+            for (String state : mStates.values()) {
+                if (state.contains("finished")) {
+                    finished++;
+                } else if (RunStatusMonitor.isTerminal(state)) {
+                    failed++;
+                }
+            }
+            int active = mStates.size() + mRejected - finished - failed;
+
+            NotificationCompat.Builder builder = new NotificationCompat.Builder(mContext)
+                    .setContentTitle(mName)
+                    .setContentText(finished + " finished, " + failed + " failed, " + active
+                            + " running of " + mTotal + " runs")
+                    .setSmallIcon(R.mipmap.ic_launcher)
+                    .setOngoing(finished + failed < mTotal)
+                    .setProgress(mTotal, finished + failed, false);
+
+            ((NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE))
+                    .notify(NOTIFICATION_TAG, mNotificationId, builder.build());
+        }
+    }
+}
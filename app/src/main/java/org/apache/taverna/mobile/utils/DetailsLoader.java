@@ -26,29 +26,19 @@ package org.apache.taverna.mobile.utils;
 
 import com.thebuzzmedia.sjxp.rule.IRule;
 
-import org.apache.taverna.mobile.tavernamobile.Runs;
-import org.apache.taverna.mobile.tavernamobile.TavernaPlayerAPI;
 import org.apache.taverna.mobile.tavernamobile.Workflow;
 import org.apache.taverna.mobile.utils.xmlparsers.MyExperimentXmlParserRules;
 import org.apache.taverna.mobile.utils.xmlparsers.WorkflowDetailParser;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
-import android.util.Base64;
 import android.util.Log;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
 
 /**
  * Loads workflow details from the myexperiment API and presents them on the UI .The class is
@@ -79,14 +69,9 @@ public class DetailsLoader extends AsyncTaskLoader<Workflow> {
         //start a network request to fetch user's workflow details
         try {
             Log.i("LOADER STARTED", "loading data");
-            //for password protected urls use the user's credentials
-            Authenticator.setDefault(new TavernaPlayerAPI.Authenticator("taverna", "taverna"));
-            TavernaPlayerAPI tavernaPlayerAPI = new TavernaPlayerAPI();
-            URL workflowurl;
-
             switch (this.lt) {
-                case TYPE_WORKFLOW_DETAIL:
-                    workflowurl = new URL(uri);
+                case TYPE_WORKFLOW_DETAIL: {
+                    URL workflowurl = new URL(uri);
                     connection = (HttpURLConnection) workflowurl.openConnection();
                     connection.setRequestProperty("Accept", "application/json");
                     connection.setRequestMethod("GET");
@@ -95,34 +80,7 @@ public class DetailsLoader extends AsyncTaskLoader<Workflow> {
                     Log.i("Workflow Response Code", "" + connection.getResponseCode());
                     Log.i("Workflow Response msg", "" + connection.getResponseMessage());
                     dis = connection.getInputStream();
-                    break;
-                case TYPE_RUN_HISTORY:
-                    workflowurl = new URL(new TavernaPlayerAPI(this.context).mPlayerRunUrl);
-                    connection = (HttpURLConnection) workflowurl.openConnection();
-                    String userpass = tavernaPlayerAPI.getPlayerUserName(this.context) + ":" +
-                            tavernaPlayerAPI.getPlayerUserPassword(this.context);
-                    String basicAuth = "Basic " + Base64.encodeToString(userpass.getBytes(Charset
-                            .forName("UTF-8")),
-                            Base64.DEFAULT);
-
-                    connection.setRequestProperty("Authorization", basicAuth);
-                    connection.setRequestProperty("Accept", "application/json");
-                    connection.setRequestMethod("GET");
-                    connection.connect(); //send request
-                    Log.i("RESPONSE CODE", "" + connection.getResponseCode());
-                    Log.i("RESPONSE Messsage. Run", "" + connection.getResponseMessage());
-                    dis = connection.getInputStream();
-                    break;
-                case TYPE_POLICY:
-                    workflowurl = new URL(new TavernaPlayerAPI(this.context).mServerBaseUrl);
-                    break;
-                default:
-                    workflowurl = new URL(new TavernaPlayerAPI(this.context).mPlayerWorkFlowUrl);
-                    break;
-            }
 
-            switch (this.lt) {
-                case TYPE_WORKFLOW_DETAIL: {
                     //make rules and apply the parser
                     IRule workfl = new MyExperimentXmlParserRules.WorkflowDetailRule(IRule.Type
                             .ATTRIBUTE,
@@ -162,71 +120,15 @@ public class DetailsLoader extends AsyncTaskLoader<Workflow> {
                             licetype, contenturi, contentType, tags, attrTags});
                     //   Log.e(TAG, sb.toString());
                     parser.parse(dis, this.workflow);
-                }
                     dis.close();
-                //br.close();
-                return workflow;
-                case TYPE_RUN_HISTORY: {
-                    Log.e(TAG, "Downloading run history");
-                    BufferedReader br = new BufferedReader(new InputStreamReader(dis, "UTF-8"));
-                    StringBuffer sb = new StringBuffer();
-                    String jsonData = "";
-                    while ((jsonData = br.readLine()) != null) {
-                        sb.append(jsonData);
-                    }
-                    workflow = new Workflow(this.context);
-                    JSONArray jsonArray = new JSONArray(sb.toString());
-                    Log.i("RUN JSON ", jsonArray.toString(2));
-                    for (int j = 0; j < jsonArray.length(); j++) {
-                        JSONObject jsonObject = jsonArray.getJSONObject(j);
-                        long id = jsonObject.getLong("id");
-                        long workflow_id = jsonObject.getLong("workflow_id");
-                        String name = jsonObject.getString("name");
-                        String started = jsonObject.getString("start_time");
-                        String ended = jsonObject.getString("finish_time");
-                        String state = jsonObject.getString("state");
-                        JSONObject userobj = jsonObject.getJSONObject("user");
-                        String username = userobj.getString("name");
-                        StringBuffer nm = new StringBuffer(), ur = new StringBuffer();
-                        for (String n : name.toLowerCase().split(" ")) {
-                            nm.append(n);
-                        }
-                        for (String p : uri.toLowerCase().split(" ")) {
-                            ur.append(p);
-                        }
-                        if (nm.toString().equals(ur.toString())) {
-                            Runs mrun = new Runs(name, started, ended, state);
-                            mrun.setrunId(id);
-                            mrun.setRunWorkflowId(workflow_id);
-                            mrun.setRunAuthor(username);
-
-                            workflow.addWorkflowRun(mrun);
-                        }
-                    }
-                }
-                return workflow;
-                case TYPE_POLICY: {
-
-                }
-                return workflow;
-                default:
-                    BufferedReader br = new BufferedReader(new InputStreamReader(dis, "UTF-8"));
-                    StringBuffer sb = new StringBuffer();
-                    String jsonData = "";
-                    while ((jsonData = br.readLine()) != null) {
-                        sb.append(jsonData);
-                    }
-                    dis.close();
-                    br.close();
                     return workflow;
+                }
             }
 
         } catch (MalformedURLException e) {
             Log.e(TAG, "loadInBackground: ", e);
         } catch (IOException e) {
             Log.e(TAG, "loadInBackground: ", e);
-        } catch (JSONException e) {
-            Log.e(TAG, "loadInBackground: ", e);
         }
         return workflow;
     }
@@ -260,8 +162,7 @@ public class DetailsLoader extends AsyncTaskLoader<Workflow> {
     }
 
     public static enum LoadType {
-        TYPE_WORKFLOW_DETAIL, TYPE_RUN_HISTORY, TYPE_POLICY,
-        TYPE_ABOUT_WORKFLOW
+        TYPE_WORKFLOW_DETAIL
     }
 }
 /**
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Single place the application forwards {@link ComponentCallbacks2#onTrimMemory(int)} and
+ * {@link android.content.ComponentCallbacks#onLowMemory()} to. Every in-memory cache registers
+ * here and is asked to release a fraction of its contents that grows with the trim level, so
+ * the process holds less memory while in the background and is less likely to be killed.
+ */
+public class MemoryPressureCoordinator {
+
+    private static final String LOG_TAG = MemoryPressureCoordinator.class.getSimpleName();
+
+    /**
+     * A cache that can give back memory.
+     */
+    public interface TrimmableCache {
+
+        /**
+         * Releases roughly the given fraction of the cache, 1 meaning everything.
+         *
+         * @return bytes released, estimated where the cache does not track exact sizes
+         */
+        long trim(float fraction);
+    }
+
+    private final List<Registration> mCaches = new CopyOnWriteArrayList<>();
+
+    private long mTotalReleased;
+
+    public void register(String name, TrimmableCache cache) {
+        mCaches.add(new Registration(name, cache));
+    }
+
+    public void unregister(TrimmableCache cache) {
+        for (Registration registration : mCaches) {
+            if (registration.mCache == cache) {
+                mCaches.remove(registration);
+            }
+        }
+    }
+
+    public void onTrimMemory(int level) {
+        trim(fractionFor(level), "level " + level);
+    }
+
+    public void onLowMemory() {
+        trim(1f, "low memory");
+    }
+
+    /**
+     * @return bytes released since the application started
+     */
+    public long getTotalReleased() {
+        return mTotalReleased;
+    }
+
+    static float fractionFor(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            return 1f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return 0.75f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 0.25f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.75f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.25f;
+        }
+        return 0f;
+    }
+
+    private void trim(float fraction, String reason) {
+        if (fraction <= 0f) return;
+
+        long released = 0;
+        for (Registration registration : mCaches) {
+            long cacheReleased = registration.mCache.trim(fraction);
+            Log.d(LOG_TAG, registration.mName + " released " + cacheReleased + " bytes");
+            released += cacheReleased;
+        }
+        mTotalReleased += released;
+        Log.i(LOG_TAG, "Trimmed " + (int) (fraction * 100) + "% of " + mCaches.size()
+                + " caches for " + reason + ", released " + released + " bytes");
+    }
+
+    private static class Registration {
+
+        final String mName;
+
+        final TrimmableCache mCache;
+
+        Registration(String name, TrimmableCache cache) {
+            mName = name;
+            mCache = cache;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import com.bumptech.glide.DrawableRequestBuilder;
+import com.bumptech.glide.DrawableTypeRequest;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.model.ImageVideoWrapper;
+import com.bumptech.glide.load.resource.bitmap.FileDescriptorBitmapDecoder;
+import com.bumptech.glide.load.resource.bitmap.GlideBitmapDrawable;
+import com.bumptech.glide.load.resource.bitmap.ImageVideoBitmapDecoder;
+import com.bumptech.glide.load.resource.bitmap.StreamBitmapDecoder;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.load.resource.file.FileToStreamDecoder;
+import com.bumptech.glide.load.resource.gif.GifResourceDecoder;
+import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapper;
+import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapperResourceDecoder;
+import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapperStreamResourceDecoder;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.SizeReadyCallback;
+import com.bumptech.glide.request.target.Target;
+
+import org.apache.taverna.mobile.R;
+
+import android.content.Context;
+import android.util.Log;
+import android.widget.ImageView;
+
+/**
+ * Loads myExperiment workflow previews. Every request goes through {@link PreviewVariantLoader},
+ * which downloads the smallest preview variant covering the target view, and uses
+ * {@link DiskCacheStrategy#ALL}, so each variant is downloaded once while every screen decodes
+ * and caches its own result at the size of its ImageView. List rows are decoded as RGB_565 and
+ * show a low resolution thumbnail pass first. The detail header starts with the list row image
+ * if it is still cached, scaled up, and crossfades to its own.
+ */
+public final class PreviewImageLoader {
+
+    private static final String LOG_TAG = PreviewImageLoader.class.getSimpleName();
+
+    private static final float LIST_THUMBNAIL_SIZE_MULTIPLIER = 0.1f;
+
+    private static final RequestListener<String, GlideDrawable> DECODE_STATS =
+            new RequestListener<String, GlideDrawable>() {
+                @Override
+                public boolean onException(Exception e, String model,
+                                           Target<GlideDrawable> target,
+                                           boolean isFirstResource) {
+                    Log.w(LOG_TAG, "Unable to load preview " + model, e);
+                    return false;
+                }
+
+                @Override
+                public boolean onResourceReady(GlideDrawable resource, String model,
+                                               Target<GlideDrawable> target,
+                                               boolean isFromMemoryCache,
+                                               boolean isFirstResource) {
+                    if (Log.isLoggable(LOG_TAG, Log.DEBUG)
+                            && resource instanceof GlideBitmapDrawable) {
+                        Log.d(LOG_TAG, "Decoded " + model + " at "
+                                + resource.getIntrinsicWidth() + "x"
+                                + resource.getIntrinsicHeight() + ", "
+                                + ((GlideBitmapDrawable) resource).getBitmap().getByteCount()
+                                + " bytes, from memory cache " + isFromMemoryCache);
+                    }
+                    return false;
+                }
+            };
+
+    private static PreviewVariantLoader sVariantLoader;
+
+    private static PreviewVariantLoader sCachedVariantLoader;
+
+    private static ResourceDecoder<ImageVideoWrapper, GifBitmapWrapper> sListDecoder;
+
+    //size of the last measured list row preview, list results are cached under it
+    private static volatile int sListPreviewWidth;
+    private static volatile int sListPreviewHeight;
+
+    private static final SizeReadyCallback LIST_SIZE = new SizeReadyCallback() {
+        @Override
+        public void onSizeReady(int width, int height) {
+            sListPreviewWidth = width;
+            sListPreviewHeight = height;
+        }
+    };
+
+    private PreviewImageLoader() {
+    }
+
+    public static void loadListPreview(Context context, String previewUri, ImageView target) {
+        listFormat(context, previewRequest(context, previewUri))
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .thumbnail(LIST_THUMBNAIL_SIZE_MULTIPLIER)
+                .placeholder(R.drawable.placeholder)
+                .error(R.drawable.placeholder)
+                .listener(DECODE_STATS)
+                .into(target)
+                .getSize(LIST_SIZE);
+    }
+
+    /**
+     * Decodes a list preview into the memory cache under the same key
+     * {@link #loadListPreview(Context, String, ImageView)} uses for a view of the given size.
+     *
+     * @return target that can be passed to {@link Glide#clear(Target)} to cancel the preload
+     */
+    public static Target<GlideDrawable> preloadListPreview(Context context, String previewUri,
+                                                           int width, int height) {
+        return listFormat(context, previewRequest(context, previewUri))
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .preload(width, height);
+    }
+
+    public static void loadDetailPreview(Context context, String previewUri, ImageView target) {
+        DrawableRequestBuilder<String> request = previewRequest(context, previewUri);
+        if (sListPreviewWidth > 0 && sListPreviewHeight > 0) {
+            //same model, size, format and lack of transformation as the list row, so this is a
+            //cache hit
+            request.thumbnail(listFormat(context, cachedPreviewRequest(context, previewUri))
+                    .diskCacheStrategy(DiskCacheStrategy.ALL)
+                    .dontTransform()
+                    .override(sListPreviewWidth, sListPreviewHeight));
+        }
+        request.diskCacheStrategy(DiskCacheStrategy.ALL)
+                .crossFade()
+                .placeholder(R.drawable.placeholder)
+                .error(R.drawable.placeholder)
+                .listener(DECODE_STATS)
+                .into(target);
+    }
+
+    //what BitmapRequestBuilder.format(PREFER_RGB_565) sets up, for drawable requests; list rows
+    //show many small previews, so they use half the memory of the detail header's ARGB_8888
+    private static DrawableRequestBuilder<String> listFormat(
+            Context context, DrawableRequestBuilder<String> request) {
+        synchronized (PreviewImageLoader.class) {
+            if (sListDecoder == null) {
+                Context appContext = context.getApplicationContext();
+                BitmapPool bitmapPool = Glide.get(appContext).getBitmapPool();
+                sListDecoder = new GifBitmapWrapperResourceDecoder(
+                        new ImageVideoBitmapDecoder(
+                                new StreamBitmapDecoder(bitmapPool, DecodeFormat.PREFER_RGB_565),
+                                new FileDescriptorBitmapDecoder(bitmapPool,
+                                        DecodeFormat.PREFER_RGB_565)),
+                        new GifResourceDecoder(appContext, bitmapPool), bitmapPool);
+            }
+        }
+        return request.decoder(sListDecoder)
+                .cacheDecoder(new FileToStreamDecoder<GifBitmapWrapper>(
+                        new GifBitmapWrapperStreamResourceDecoder(sListDecoder)));
+    }
+
+    private static DrawableTypeRequest<String> previewRequest(Context context,
+                                                              String previewUri) {
+        synchronized (PreviewImageLoader.class) {
+            if (sVariantLoader == null) {
+                sVariantLoader = new PreviewVariantLoader(context.getApplicationContext(), false);
+            }
+        }
+        return Glide.with(context)
+                .using(sVariantLoader)
+                .load(previewUri);
+    }
+
+    private static DrawableTypeRequest<String> cachedPreviewRequest(Context context,
+                                                                    String previewUri) {
+        synchronized (PreviewImageLoader.class) {
+            if (sCachedVariantLoader == null) {
+                sCachedVariantLoader =
+                        new PreviewVariantLoader(context.getApplicationContext(), true);
+            }
+        }
+        return Glide.with(context)
+                .using(sCachedVariantLoader)
+                .load(previewUri);
+    }
+}
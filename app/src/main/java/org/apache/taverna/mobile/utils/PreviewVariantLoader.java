@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.stream.StreamModelLoader;
+import com.bumptech.glide.request.target.Target;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Model loader for myExperiment preview urls which downloads the smallest preview variant that
+ * covers the size Glide asks for. myExperiment serves every workflow version preview as
+ * {@code .../previews/full} and as scaled down {@code thumb} and {@code medium} variants. The
+ * chosen variant url is the fetcher id and therefore part of every cache key, so list rows and
+ * the detail header cache their own sizes. If a variant cannot be fetched the full preview is
+ * downloaded instead. A cache only loader never touches the network, it fails unless the
+ * variant is already in Glide's memory or disk cache.
+ */
+public class PreviewVariantLoader implements StreamModelLoader<String> {
+
+    private static final String LOG_TAG = PreviewVariantLoader.class.getSimpleName();
+
+    private static final String FULL_VARIANT = "/previews/full";
+
+    //variants ordered by size, with the bounding box myExperiment scales them into
+    private static final String[] VARIANTS = {"/previews/thumb", "/previews/medium"};
+    private static final int[] VARIANT_SIZES = {100, 500};
+
+    private final ModelLoader<GlideUrl, InputStream> mUrlLoader;
+
+    private final boolean mCacheOnly;
+
+    public PreviewVariantLoader(Context context, boolean cacheOnly) {
+        mUrlLoader = Glide.buildStreamModelLoader(GlideUrl.class, context);
+        mCacheOnly = cacheOnly;
+    }
+
+    @Override
+    public DataFetcher<InputStream> getResourceFetcher(String previewUri, int width, int height) {
+        String variantUri = selectVariant(previewUri, width, height);
+        DataFetcher<InputStream> fetcher =
+                mUrlLoader.getResourceFetcher(new GlideUrl(variantUri), width, height);
+        if (mCacheOnly) {
+            return new CacheOnlyFetcher(fetcher.getId());
+        }
+        if (variantUri.equals(previewUri)) {
+            return fetcher;
+        }
+        return new FallbackFetcher(fetcher,
+                mUrlLoader.getResourceFetcher(new GlideUrl(previewUri), width, height));
+    }
+
+    /**
+     * @return the url of the smallest variant at least as large as the target in both
+     * dimensions, or the given url when it is not a full myExperiment preview or no variant is
+     * large enough
+     */
+    static String selectVariant(String previewUri, int width, int height) {
+        if (!previewUri.endsWith(FULL_VARIANT)
+                || width == Target.SIZE_ORIGINAL || height == Target.SIZE_ORIGINAL) {
+            return previewUri;
+        }
+
+        int required = Math.max(width, height);
+        String base = previewUri.substring(0, previewUri.length() - FULL_VARIANT.length());
+        for (int i = 0; i < VARIANTS.length; i++) {
+            if (VARIANT_SIZES[i] >= required) {
+                return base + VARIANTS[i];
+            }
+        }
+        return previewUri;
+    }
+
+    //same id as the network fetcher, so cache lookups use the same keys
+    private static class CacheOnlyFetcher implements DataFetcher<InputStream> {
+
+        private final String mId;
+
+        CacheOnlyFetcher(String id) {
+            mId = id;
+        }
+
+        @Override
+        public InputStream loadData(Priority priority) throws Exception {
+            throw new IOException("Preview " + mId + " is not cached");
+        }
+
+        @Override
+        public void cleanup() {
+        }
+
+        @Override
+        public String getId() {
+            return mId;
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    private static class FallbackFetcher implements DataFetcher<InputStream> {
+
+        private final DataFetcher<InputStream> mVariant;
+
+        private final DataFetcher<InputStream> mFull;
+
+        FallbackFetcher(DataFetcher<InputStream> variant, DataFetcher<InputStream> full) {
+            mVariant = variant;
+            mFull = full;
+        }
+
+        @Override
+        public InputStream loadData(Priority priority) throws Exception {
+            try {
+                return mVariant.loadData(priority);
+            } catch (Exception e) {
+                Log.w(LOG_TAG, "Preview variant " + mVariant.getId()
+                        + " unavailable, loading the full preview", e);
+                mVariant.cleanup();
+                return mFull.loadData(priority);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            mVariant.cleanup();
+            mFull.cleanup();
+        }
+
+        @Override
+        public String getId() {
+            return mVariant.getId();
+        }
+
+        @Override
+        public void cancel() {
+            mVariant.cancel();
+            mFull.cancel();
+        }
+    }
+}
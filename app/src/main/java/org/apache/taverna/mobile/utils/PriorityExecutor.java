@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed size thread pool whose queue is ordered by {@link Priority}, first in first out within
+ * a priority. Records how long tasks wait in the queue so contention shows up in
+ * {@link #toString()}. Cancel work through whatever wraps it, e.g. {@code AsyncTask.cancel}; a
+ * cancelled task still leaves the queue in order but returns immediately.
+ */
+public class PriorityExecutor implements Executor {
+
+    private static final String LOG_TAG = PriorityExecutor.class.getSimpleName();
+
+    //waits longer than this are logged, they mean the pool is too small for its load
+    private static final long SLOW_WAIT_MS = 500;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    public enum Priority {
+        LOW, NORMAL, HIGH
+    }
+
+    private final String mName;
+
+    private final ThreadPoolExecutor mPool;
+
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private final AtomicLong mCompleted = new AtomicLong();
+
+    private final AtomicLong mTotalWaitMs = new AtomicLong();
+
+    private final AtomicLong mMaxWaitMs = new AtomicLong();
+
+    public PriorityExecutor(final String name, int threads) {
+        mName = name;
+        mPool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "taverna-" + name + "-" + mCount.getAndIncrement());
+            }
+        });
+        mPool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        execute(command, Priority.NORMAL);
+    }
+
+    public void execute(Runnable command, Priority priority) {
+        mPool.execute(new PrioritizedTask(command, priority, mSequence.getAndIncrement()));
+    }
+
+    /**
+     * @return an executor submitting everything to this pool at the given priority, for
+     * {@code AsyncTask.executeOnExecutor}
+     */
+    public Executor withPriority(final Priority priority) {
+        return new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                PriorityExecutor.this.execute(command, priority);
+            }
+        };
+    }
+
+    public int getQueueDepth() {
+        return mPool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return mPool.getActiveCount();
+    }
+
+    public long getAverageWaitMs() {
+        long completed = mCompleted.get();
+        return completed == 0 ? 0 : mTotalWaitMs.get() / completed;
+    }
+
+    public long getMaxWaitMs() {
+        return mMaxWaitMs.get();
+    }
+
+    @Override
+    public String toString() {
+        return mName + "[threads=" + mPool.getMaximumPoolSize() + ", active=" + getActiveCount()
+                + ", queued=" + getQueueDepth() + ", completed=" + mCompleted.get()
+                + ", avgWaitMs=" + getAverageWaitMs() + ", maxWaitMs=" + getMaxWaitMs() + "]";
+    }
+
+    private void recordWait(long waitMs) {
+        mCompleted.incrementAndGet();
+        mTotalWaitMs.addAndGet(waitMs);
+        long max;
+        do {
+            max = mMaxWaitMs.get();
+        } while (waitMs > max && !mMaxWaitMs.compareAndSet(max, waitMs));
+
+        if (waitMs > SLOW_WAIT_MS) {
+            Log.d(LOG_TAG, "Task waited " + waitMs + "ms for " + this);
+        }
+    }
+
+    private class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+        private final Runnable mCommand;
+
+        private final Priority mPriority;
+
+        private final long mSequence;
+
+        private final long mQueuedAt = System.nanoTime();
+
+        PrioritizedTask(Runnable command, Priority priority, long sequence) {
+            mCommand = command;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            recordWait(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mQueuedAt));
+            mCommand.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull PrioritizedTask other) {
+            if (mPriority != other.mPriority) {
+                return other.mPriority.ordinal() - mPriority.ordinal();
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+}
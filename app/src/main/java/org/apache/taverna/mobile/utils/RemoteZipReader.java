@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Reads a zip archive served over HTTP without downloading it. The end of central directory
+ * record and the central directory are fetched with range requests to list the entries, and
+ * opening an entry requests only its local header and its compressed bytes. Needs a server that
+ * honours range requests; ZIP64 archives are not supported.
+ */
+public class RemoteZipReader {
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final int CENTRAL_SIZE = 46;
+
+    private static final int LOCAL_SIZE = 30;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    private static final int METHOD_STORED = 0;
+
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(\\d+)");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * One file of the archive, as described by the central directory.
+     */
+    public static class Entry {
+
+        private final String mName;
+
+        private final int mMethod;
+
+        private final long mCompressedSize;
+
+        private final long mSize;
+
+        private final long mLocalHeaderOffset;
+
+        Entry(String name, int method, long compressedSize, long size, long localHeaderOffset) {
+            mName = name;
+            mMethod = method;
+            mCompressedSize = compressedSize;
+            mSize = size;
+            mLocalHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return uncompressed size in bytes
+         */
+        public long getSize() {
+            return mSize;
+        }
+
+        public long getCompressedSize() {
+            return mCompressedSize;
+        }
+
+        public boolean isDirectory() {
+            return mName.endsWith("/");
+        }
+    }
+
+    private final OkHttpClient mOkHttpClient;
+
+    private final String mUrl;
+
+    private final String mAuthorization;
+
+    /**
+     * @param authorization value of the Authorization header, or null to send none
+     */
+    public RemoteZipReader(OkHttpClient okHttpClient, String url, String authorization) {
+        mOkHttpClient = okHttpClient;
+        mUrl = url;
+        mAuthorization = authorization;
+    }
+
+    /**
+     * Lists the entries of the archive, which costs one request, or two if the central
+     * directory does not fit into the tail fetched to find its end record.
+     */
+    public List<Entry> readEntries() throws IOException {
+        Response response = fetch("bytes=-" + (END_SIZE + MAX_COMMENT_SIZE));
+        byte[] tail;
+        long tailOffset;
+        try {
+            Matcher range = CONTENT_RANGE.matcher(String.valueOf(response.header("Content-Range")));
+            if (response.code() != 206 || !range.matches()) {
+                throw new IOException(mUrl + " cannot be read in ranges");
+            }
+            tailOffset = Long.parseLong(range.group(1));
+            tail = response.body().bytes();
+        } finally {
+            response.body().close();
+        }
+
+        int end = -1;
+        for (int i = tail.length - END_SIZE; i >= 0; i--) {
+            if (readInt(tail, i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException(mUrl + " is not a zip archive");
+        }
+
+        int count = readShort(tail, end + 10);
+        long directorySize = readUnsignedInt(tail, end + 12);
+        long directoryOffset = readUnsignedInt(tail, end + 16);
+        if (count == 0xFFFF || directorySize == ZIP64_MARKER || directoryOffset == ZIP64_MARKER) {
+            throw new IOException(mUrl + " is a ZIP64 archive");
+        }
+
+        byte[] directory;
+        int position;
+        if (directoryOffset >= tailOffset) {
+            directory = tail;
+            position = (int) (directoryOffset - tailOffset);
+        } else {
+            directory = readRange(directoryOffset, directorySize);
+            position = 0;
+        }
+
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_SIZE > directory.length
+                    || readInt(directory, position) != CENTRAL_SIGNATURE) {
+                throw new IOException("Corrupt central directory in " + mUrl);
+            }
+            int nameLength = readShort(directory, position + 28);
+            int extraLength = readShort(directory, position + 30);
+            int commentLength = readShort(directory, position + 32);
+            entries.add(new Entry(
+                    new String(directory, position + CENTRAL_SIZE, nameLength, UTF_8),
+                    readShort(directory, position + 10),
+                    readUnsignedInt(directory, position + 20),
+                    readUnsignedInt(directory, position + 24),
+                    readUnsignedInt(directory, position + 42)));
+            position += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Streams the uncompressed content of one entry. The caller must close the stream.
+     */
+    public InputStream open(Entry entry) throws IOException {
+        if (entry.mMethod != METHOD_STORED && entry.mMethod != METHOD_DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.mMethod + " for "
+                    + entry.mName);
+        }
+
+        //the local extra field may differ from the central one, so its length is read here
+        byte[] header = readRange(entry.mLocalHeaderOffset, LOCAL_SIZE);
+        if (readInt(header, 0) != LOCAL_SIGNATURE) {
+            throw new IOException("Corrupt local header for " + entry.mName);
+        }
+        long dataOffset = entry.mLocalHeaderOffset + LOCAL_SIZE + readShort(header, 26)
+                + readShort(header, 28);
+
+        if (entry.mCompressedSize == 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        final Response response = fetch("bytes=" + dataOffset + "-"
+                + (dataOffset + entry.mCompressedSize - 1));
+        if (response.code() != 206) {
+            response.body().close();
+            throw new IOException(mUrl + " cannot be read in ranges");
+        }
+        InputStream data = response.body().byteStream();
+        if (entry.mMethod == METHOD_STORED) {
+            return data;
+        }
+
+        //a raw inflater may need one byte past the end of the data, as ZipFile gives it
+        final Inflater inflater = new Inflater(true);
+        return new InflaterInputStream(new SequenceInputStream(data,
+                new ByteArrayInputStream(new byte[1])), inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                    response.body().close();
+                }
+            }
+        };
+    }
+
+    private byte[] readRange(long offset, long length) throws IOException {
+        Response response = fetch("bytes=" + offset + "-" + (offset + length - 1));
+        try {
+            if (response.code() != 206) {
+                throw new IOException(mUrl + " cannot be read in ranges");
+            }
+            byte[] bytes = response.body().bytes();
+            if (bytes.length != length) {
+                throw new IOException("Short read at " + offset + " of " + mUrl);
+            }
+            return bytes;
+        } finally {
+            response.body().close();
+        }
+    }
+
+    private Response fetch(String range) throws IOException {
+        Request.Builder request = new Request.Builder()
+                .url(mUrl)
+                .header("Range", range)
+                .header("Accept", "*/*");
+        if (mAuthorization != null) {
+            request.header("Authorization", mAuthorization);
+        }
+
+        Response response = mOkHttpClient.newCall(request.build()).execute();
+        if (!response.isSuccessful()) {
+            response.body().close();
+            throw new IOException("Unexpected response " + response.code() + " for " + mUrl);
+        }
+        return response;
+    }
+
+    //zip fields are little endian
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
+
+    private static long readUnsignedInt(byte[] bytes, int offset) {
+        return readInt(bytes, offset) & 0xFFFFFFFFL;
+    }
+}
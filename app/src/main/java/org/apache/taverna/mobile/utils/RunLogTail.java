@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.model.PlayerRun;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Follows the log of a running workflow. Every poll asks the Player only for the bytes past the
+ * end of what was already read, with an open ended range request, and appends them to a
+ * {@link RingBuffer} that keeps the last {@link #MAX_CHARS} characters. Polls slow down while
+ * the log does not grow, and tailing stops after one last poll once {@link RunStatusMonitor}
+ * reports the run as finished.
+ */
+public class RunLogTail implements RunStatusMonitor.Listener {
+
+    /**
+     * Receives the tail of the log on the main thread whenever it grew.
+     */
+    public interface Listener {
+        void onLogChanged(CharSequence log, boolean finished);
+    }
+
+    private static final String LOG_TAG = RunLogTail.class.getSimpleName();
+
+    private static final int MAX_CHARS = 64 * 1024;
+
+    private static final long MIN_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+
+    private static final long MAX_INTERVAL = TimeUnit.SECONDS.toMillis(15);
+
+    private static final float BACKOFF_FACTOR = 1.5f;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int mRunId;
+
+    private final String mUrl;
+
+    private final Listener mListener;
+
+    private final OkHttpClient mOkHttpClient;
+
+    private final ScheduledExecutorService mScheduler =
+            Executors.newSingleThreadScheduledExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    //only touched on the scheduler thread
+    private final RingBuffer mBuffer = new RingBuffer(MAX_CHARS);
+
+    private long mOffset;
+
+    private long mInterval = MIN_INTERVAL;
+
+    private ScheduledFuture<?> mNextPoll;
+
+    private volatile boolean mStopped;
+
+    /**
+     * @param url absolute url of the run's log
+     */
+    public RunLogTail(int runId, String url, Listener listener) {
+        mRunId = runId;
+        mUrl = url;
+        mListener = listener;
+        mOkHttpClient = TavernaApplication.getPlayerApiManager().getOkHttpClient();
+    }
+
+    /**
+     * Starts polling. Must be called on the main thread.
+     */
+    public void start() {
+        TavernaApplication.getRunStatusMonitor().watch(mRunId, this);
+        schedule(0, false);
+    }
+
+    /**
+     * Stops polling for good. Must be called on the main thread.
+     */
+    public void stop() {
+        mStopped = true;
+        TavernaApplication.getRunStatusMonitor().unwatch(mRunId, this);
+        mScheduler.shutdownNow();
+    }
+
+    @Override
+    public void onRunChanged(PlayerRun run) {
+        if (RunStatusMonitor.isTerminal(RunStatusMonitor.stateOf(run))) {
+            TavernaApplication.getRunStatusMonitor().unwatch(mRunId, this);
+            //whatever the run wrote before finishing is picked up by this last poll
+            schedule(0, true);
+        }
+    }
+
+    @Override
+    public void onRunGone(int runId) {
+        //the log went with the run, so this last poll only hands over what was read
+        schedule(0, true);
+    }
+
+    private void schedule(final long delay, final boolean last) {
+        if (mStopped) return;
+        try {
+            mScheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    //a last poll may have shut the scheduler down meanwhile
+                    if (mScheduler.isShutdown()) return;
+                    if (mNextPoll != null) {
+                        mNextPoll.cancel(false);
+                    }
+                    mNextPoll = mScheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            poll(last);
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.d(LOG_TAG, "Tail of run " + mRunId + " already ended");
+        }
+    }
+
+    //runs on the scheduler thread
+    private void poll(boolean last) {
+        boolean grew = false;
+        try {
+            long offset = fetchAppended(mOkHttpClient, mUrl, mOffset, mBuffer);
+            grew = offset != mOffset;
+            mOffset = offset;
+        } catch (IOException e) {
+            //the log may not exist yet while the run is pending
+            Log.d(LOG_TAG, "No log for run " + mRunId + " yet: " + e.getMessage());
+        }
+
+        if (grew || last) {
+            deliver(mBuffer.toString(), last);
+        }
+        if (last) {
+            mScheduler.shutdown();
+            return;
+        }
+
+        mInterval = grew ? MIN_INTERVAL
+                : Math.min(MAX_INTERVAL, (long) (mInterval * BACKOFF_FACTOR));
+        mNextPoll = mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                poll(false);
+            }
+        }, mInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends what the log at {@code url} has past {@code offset} to {@code buffer}. A log that
+     * got shorter was replaced, so the buffer is cleared and reading starts over on the next poll.
+     *
+     * @return offset to ask for next time, unchanged when the log did not grow
+     */
+    static long fetchAppended(OkHttpClient client, String url, long offset, RingBuffer buffer)
+            throws IOException {
+        //the shared client sends the credentials, and would otherwise ask for json
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Range", "bytes=" + offset + "-")
+                .header("Accept", "*/*")
+                .build();
+
+        Response response = client.newCall(request).execute();
+        try {
+            if (response.code() == 416) {
+                //nothing past the offset yet
+                return offset;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected response " + response.code() + " for " + url);
+            }
+
+            InputStream in = response.body().byteStream();
+            if (response.code() != 206) {
+                //no range support, the already read part has to be skipped on our side
+                long skipped = 0;
+                while (skipped < offset) {
+                    long count = in.skip(offset - skipped);
+                    if (count <= 0) break;
+                    skipped += count;
+                }
+                if (skipped < offset) {
+                    buffer.clear();
+                    return 0;
+                }
+            }
+            return offset + read(in, buffer);
+        } finally {
+            response.body().close();
+        }
+    }
+
+    /**
+     * Appends the text of {@code in} to {@code buffer}. A character split across reads is
+     * completed by the next read, one cut off at the end of the stream is left for the next poll.
+     *
+     * @return number of bytes appended
+     */
+    static long read(InputStream in, RingBuffer buffer) throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        int pending = 0;
+        long appended = 0;
+        int count;
+        while ((count = in.read(bytes, pending, bytes.length - pending)) != -1) {
+            int length = pending + count;
+            int complete = completeLength(bytes, length);
+            if (complete > 0) {
+                buffer.append(new String(bytes, 0, complete, UTF_8));
+                appended += complete;
+            }
+            pending = length - complete;
+            System.arraycopy(bytes, complete, bytes, 0, pending);
+        }
+        return appended;
+    }
+
+    private void deliver(final String log, final boolean finished) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mStopped) {
+                    mListener.onLogChanged(log, finished);
+                }
+            }
+        });
+    }
+
+    //length of the prefix that does not end in the middle of a UTF-8 sequence
+    static int completeLength(byte[] bytes, int length) {
+        for (int i = length - 1; i >= 0 && i >= length - 4; i--) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80) return length;
+            if (b >= 0xC0) {
+                int size = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+                return length - i >= size ? length : i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Keeps the last characters appended to it, dropping the oldest ones when full.
+     */
+    static class RingBuffer {
+
+        private final char[] mChars;
+
+        private int mStart;
+
+        private int mSize;
+
+        RingBuffer(int capacity) {
+            mChars = new char[capacity];
+        }
+
+        void append(String text) {
+            int length = text.length();
+            int from = Math.max(0, length - mChars.length);
+            for (int i = from; i < length; i++) {
+                mChars[(mStart + mSize) % mChars.length] = text.charAt(i);
+                if (mSize < mChars.length) {
+                    mSize++;
+                } else {
+                    mStart = (mStart + 1) % mChars.length;
+                }
+            }
+        }
+
+        void clear() {
+            mStart = 0;
+            mSize = 0;
+        }
+
+        @Override
+        public String toString() {
+            int firstPart = Math.min(mSize, mChars.length - mStart);
+            return new StringBuilder(mSize)
+                    .append(mChars, mStart, firstPart)
+                    .append(mChars, 0, mSize - firstPart)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.activities.RunResult;
+import org.apache.taverna.mobile.data.model.PlayerRun;
+import org.apache.taverna.mobile.data.remote.PlayerService;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Response;
+
+/**
+ * Polls the state of Taverna Player runs in the background, any number at a time, through the
+ * Player service. A run is polled every {@link #MIN_INTERVAL} ms after it starts or changes
+ * state, the interval then grows while nothing changes, and a run is dropped once it has
+ * finished or failed. When several runs are due together a single {@code /runs} request is
+ * used and only the runs whose state changed are fetched in full. Listeners and notifications
+ * only hear about state changes; a notification is posted when no screen listens to the run.
+ * A run the Player no longer knows is dropped together with its listeners.
+ */
+public class RunStatusMonitor {
+
+    /**
+     * Receives the details of a run on the main thread whenever its state changes.
+     */
+    public interface Listener {
+        void onRunChanged(PlayerRun run);
+
+        /**
+         * Called once when the Player answers 404 for the run, for example because it was
+         * deleted. The listener has been removed by then.
+         */
+        void onRunGone(int runId);
+    }
+
+    private static final String LOG_TAG = RunStatusMonitor.class.getSimpleName();
+
+    private static final String NOTIFICATION_TAG = "run";
+
+    private static final long MIN_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+
+    private static final long MAX_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    private static final float BACKOFF_FACTOR = 1.5f;
+
+    //due runs at which one /runs request is cheaper than a request per run
+    private static final int BATCH_THRESHOLD = 2;
+
+    private static final String[] TERMINAL_STATES = {"finished", "failed", "cancelled", "timeout"};
+
+    private static class TrackedRun {
+
+        final int id;
+
+        String state;
+
+        //details as of the last state change
+        PlayerRun details;
+
+        long interval = MIN_INTERVAL;
+
+        long dueAt;
+
+        TrackedRun(int id) {
+            this.id = id;
+        }
+    }
+
+    private final Context mContext;
+
+    private final ScheduledExecutorService mScheduler =
+            Executors.newSingleThreadScheduledExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    //only touched on the scheduler thread
+    private final Map<Integer, TrackedRun> mRuns = new HashMap<>();
+
+    private ScheduledFuture<?> mNextPoll;
+
+    //only touched on the main thread
+    private final Map<Integer, Set<Listener>> mListeners = new HashMap<>();
+
+    public RunStatusMonitor(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Starts tracking a run, or polls it right away if it is tracked already, and delivers its
+     * state changes to the listener until it is removed. Must be called on the main thread.
+     */
+    public void watch(final int runId, final Listener listener) {
+        Set<Listener> listeners = mListeners.get(runId);
+        if (listeners == null) {
+            listeners = new HashSet<>();
+            mListeners.put(runId, listeners);
+        }
+        listeners.add(listener);
+
+        mScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                TrackedRun run = mRuns.get(runId);
+                if (run == null) {
+                    run = new TrackedRun(runId);
+                    mRuns.put(runId, run);
+                } else if (run.details != null) {
+                    //the new listener may show an older state than the one already seen
+                    deliverTo(runId, listener, run.details);
+                }
+                run.dueAt = 0;
+                schedule();
+            }
+        });
+    }
+
+    /**
+     * Removes a listener. The run stays tracked until it ends and a notification is posted when
+     * it changes state with nobody listening. Must be called on the main thread.
+     */
+    public void unwatch(int runId, Listener listener) {
+        Set<Listener> listeners = mListeners.get(runId);
+        if (listeners == null) return;
+
+        listeners.remove(listener);
+        if (listeners.isEmpty()) mListeners.remove(runId);
+    }
+
+    private void schedule() {
+        if (mNextPoll != null) mNextPoll.cancel(false);
+        if (mRuns.isEmpty()) return;
+
+        long dueAt = Long.MAX_VALUE;
+        for (TrackedRun run : mRuns.values()) {
+            dueAt = Math.min(dueAt, run.dueAt);
+        }
+        long delay = Math.max(0, dueAt - SystemClock.elapsedRealtime());
+        mNextPoll = mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        long now = SystemClock.elapsedRealtime();
+        List<TrackedRun> due = new ArrayList<>();
+        for (TrackedRun run : mRuns.values()) {
+            if (run.dueAt <= now) due.add(run);
+        }
+
+        //fetched per poll, the service is replaced when the Player url changes
+        PlayerService service = TavernaApplication.getPlayerApiManager().getPlayerService();
+        if (due.size() >= BATCH_THRESHOLD) {
+            pollBatch(service, due);
+        } else {
+            for (TrackedRun run : due) {
+                pollSingle(service, run);
+            }
+        }
+
+        Iterator<TrackedRun> iterator = mRuns.values().iterator();
+        while (iterator.hasNext()) {
+            if (isTerminal(iterator.next().state)) iterator.remove();
+        }
+        schedule();
+    }
+
+    private void pollBatch(PlayerService service, List<TrackedRun> due) {
+        Map<Long, String> states = new HashMap<>();
+        try {
+            //blocks this thread only, network errors come back wrapped in a RuntimeException
+            Response<List<PlayerRun>> response = service.getRuns(null).toBlocking().single();
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Unexpected response " + response.code());
+            }
+            for (PlayerRun run : response.body()) {
+                states.put(run.getId(), stateOf(run));
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(LOG_TAG, "Unable to list runs, polling them one by one", e);
+            for (TrackedRun run : due) {
+                pollSingle(service, run);
+            }
+            return;
+        }
+
+        for (TrackedRun run : due) {
+            String state = states.get((long) run.id);
+            if (state != null && state.equals(run.state)) {
+                backOff(run);
+            } else {
+                //new state, or a run the listing leaves out, so fetch all of its details
+                pollSingle(service, run);
+            }
+        }
+    }
+
+    private void pollSingle(PlayerService service, TrackedRun run) {
+        try {
+            Response<PlayerRun> response = service.getRun(run.id).execute();
+            if (response.code() == HttpURLConnection.HTTP_NOT_FOUND) {
+                //only due lists are being iterated, so the run can go right away
+                Log.i(LOG_TAG, "Run " + run.id + " no longer exists on the Player");
+                mRuns.remove(run.id);
+                deliverGone(run.id);
+                return;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Unexpected response " + response.code() + " for run "
+                        + run.id);
+            }
+            PlayerRun details = response.body();
+            String state = stateOf(details);
+            if (state.equals(run.state)) {
+                backOff(run);
+            } else {
+                run.state = state;
+                run.details = details;
+                run.interval = MIN_INTERVAL;
+                run.dueAt = SystemClock.elapsedRealtime() + run.interval;
+                deliver(run.id, details);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(LOG_TAG, "Unable to poll run " + run.id, e);
+            backOff(run);
+        }
+    }
+
+    private static void backOff(TrackedRun run) {
+        run.interval = Math.min(MAX_INTERVAL, (long) (run.interval * BACKOFF_FACTOR));
+        run.dueAt = SystemClock.elapsedRealtime() + run.interval;
+    }
+
+    private void deliver(final int runId, final PlayerRun details) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Set<Listener> listeners = mListeners.get(runId);
+                if (listeners == null || listeners.isEmpty()) {
+                    postNotification(runId, details);
+                    return;
+                }
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.onRunChanged(details);
+                }
+            }
+        });
+    }
+
+    private void deliverGone(final int runId) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Set<Listener> listeners = mListeners.remove(runId);
+                if (listeners == null) return;
+
+                for (Listener listener : listeners) {
+                    listener.onRunGone(runId);
+                }
+            }
+        });
+    }
+
+    private void deliverTo(final int runId, final Listener listener,
+                           final PlayerRun details) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Set<Listener> listeners = mListeners.get(runId);
+                if (listeners != null && listeners.contains(listener)) {
+                    listener.onRunChanged(details);
+                }
+            }
+        });
+    }
+
+    private void postNotification(int runId, PlayerRun details) {
+        Intent intent = new Intent(mContext, RunResult.class)
+                .putExtra("runresult",
+                        TavernaApplication.getPlayerApiManager().getGson().toJson(details))
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(mContext)
+                .setContentTitle(details.getName() != null
+                        ? details.getName() : String.valueOf(runId))
+                .setContentText(details.getStatusMessage() != null
+                        ? details.getStatusMessage() : details.getState())
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setAutoCancel(true)
+                .setContentIntent(PendingIntent.getActivity(mContext, runId, intent,
+                        PendingIntent.FLAG_UPDATE_CURRENT));
+
+        ((NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE))
+                .notify(NOTIFICATION_TAG, runId, builder.build());
+    }
+
+    static String stateOf(PlayerRun run) {
+        String state = run.getState() != null ? run.getState() : run.getStatusMessage();
+        return state != null ? state.toLowerCase(Locale.US) : "";
+    }
+
+    static boolean isTerminal(String state) {
+        if (state == null) return false;
+        for (String terminal : TERMINAL_STATES) {
+            if (state.contains(terminal)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,674 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.TavernaApplication;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
+
+/**
+ * Downloads Taverna Player run outputs and logs with HTTP range requests. Files the server can
+ * serve in ranges are split into segments fetched in parallel into a {@code .part} file, and the
+ * position of every segment is checkpointed, so a download cut off by a network drop or by the
+ * process dying continues where it stopped. The finished file is checked against the length the
+ * server announced before it is moved to its destination. Servers without range support get a
+ * plain single stream download that starts over when interrupted.
+ */
+public class SegmentedDownloader {
+
+    private static final String LOG_TAG = SegmentedDownloader.class.getSimpleName();
+
+    private static final String NOTIFICATION_TAG = "download";
+
+    private static final String CHECKPOINT_DIRECTORY = "downloads";
+
+    static final int MAX_SEGMENTS = 4;
+
+    //smaller files are not worth the extra requests
+    static final long MIN_SEGMENT_BYTES = 512 * 1024;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 1000;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Bytes on disk so far and the transfer rate of the current attempt.
+     */
+    public static class Progress {
+
+        private final long mDownloaded;
+
+        private final long mLength;
+
+        private final float mBytesPerSecond;
+
+        Progress(long downloaded, long length, float bytesPerSecond) {
+            mDownloaded = downloaded;
+            mLength = length;
+            mBytesPerSecond = bytesPerSecond;
+        }
+
+        public long getDownloaded() {
+            return mDownloaded;
+        }
+
+        /**
+         * @return length of the file, or -1 if the server did not tell
+         */
+        public long getLength() {
+            return mLength;
+        }
+
+        public float getBytesPerSecond() {
+            return mBytesPerSecond;
+        }
+    }
+
+    private final Context mContext;
+
+    private final OkHttpClient mOkHttpClient;
+
+    private final File mCheckpointDirectory;
+
+    //destination path to running download, only touched on the main thread
+    private final Map<String, Subscription> mActive = new HashMap<>();
+
+    public SegmentedDownloader(Context context) {
+        mContext = context.getApplicationContext();
+        mOkHttpClient = TavernaApplication.getPlayerApiManager().getOkHttpClient();
+        mCheckpointDirectory = new File(mContext.getFilesDir(), CHECKPOINT_DIRECTORY);
+    }
+
+    /**
+     * Starts or resumes downloading url into destination, reporting progress in a notification.
+     * Does nothing if that destination is already downloading. Must be called on the main thread.
+     */
+    public void enqueue(final String url, final File destination) {
+        final String key = destination.getAbsolutePath();
+        if (mActive.containsKey(key)) return;
+
+        final int notificationId = key.hashCode();
+        mActive.put(key, download(url, destination)
+                .sample(1, TimeUnit.SECONDS)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Subscriber<Progress>() {
+                    @Override
+                    public void onCompleted() {
+                        mActive.remove(key);
+                        postNotification(notificationId, destination.getName(),
+                                mContext.getString(R.string.download_complete), false);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        mActive.remove(key);
+                        Log.e(LOG_TAG, "Download of " + url + " stopped", e);
+                        postNotification(notificationId, destination.getName(),
+                                mContext.getString(R.string.download_paused), false);
+                    }
+
+                    @Override
+                    public void onNext(Progress progress) {
+                        postNotification(notificationId, destination.getName(),
+                                describe(progress), true);
+                    }
+                }));
+    }
+
+    /**
+     * Resumes every download that has a checkpoint left, call once at startup.
+     */
+    public void resumePending() {
+        File[] checkpoints = mCheckpointDirectory.listFiles();
+        if (checkpoints == null) return;
+
+        for (File file : checkpoints) {
+            try {
+                Checkpoint checkpoint = Checkpoint.read(file);
+                enqueue(checkpoint.mUrl, checkpoint.mDestination);
+            } catch (IOException | JSONException e) {
+                Log.w(LOG_TAG, "Dropping unreadable checkpoint " + file, e);
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Downloads url into destination on the io scheduler, resuming from a checkpoint of an
+     * earlier attempt if there is one. Emits progress each time the checkpoint is written, about
+     * once a second, and once more when all segments are done. Completes once the file has been
+     * verified and moved into place. Unsubscribing stops the transfer and keeps its checkpoint.
+     */
+    public Observable<Progress> download(final String url, final File destination) {
+        return Observable.create(new Observable.OnSubscribe<Progress>() {
+            @Override
+            public void call(Subscriber<? super Progress> subscriber) {
+                if (subscriber.isUnsubscribed()) return;
+                Transfer transfer = new Transfer(url, destination, subscriber);
+                subscriber.add(transfer);
+                try {
+                    transfer.run();
+                    subscriber.onCompleted();
+                } catch (IOException | JSONException | InterruptedException e) {
+                    subscriber.onError(e);
+                }
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    private Response execute(String url, long from, long to, String etag) throws IOException {
+        //the shared client sends the credentials, and would otherwise ask for json
+        Request.Builder request = new Request.Builder()
+                .url(url)
+                .header("Accept", "*/*");
+        if (from >= 0) {
+            request.header("Range", "bytes=" + from + "-" + (to >= 0 ? to : ""));
+            if (etag != null) {
+                //the server answers with the whole file instead if it changed meanwhile
+                request.header("If-Range", etag);
+            }
+        }
+
+        Response response = mOkHttpClient.newCall(request.build()).execute();
+        if (!response.isSuccessful()) {
+            response.body().close();
+            throw new IOException("Unexpected response " + response.code() + " for " + url);
+        }
+        return response;
+    }
+
+    private void postNotification(int id, String title, String text, boolean ongoing) {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(mContext)
+                .setContentTitle(title)
+                .setContentText(text)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setOngoing(ongoing)
+                .setAutoCancel(!ongoing);
+
+        ((NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE))
+                .notify(NOTIFICATION_TAG, id, builder.build());
+    }
+
+    private static String describe(Progress progress) {
+        String rate = (int) (progress.getBytesPerSecond() / 1024) + " KB/s";
+        if (progress.getLength() <= 0) {
+            return progress.getDownloaded() / 1024 + " KB, " + rate;
+        }
+        return progress.getDownloaded() * 100 / progress.getLength() + "%, " + rate;
+    }
+
+    /**
+     * Byte range of the file fetched by one request. end is inclusive and -1 for an unknown
+     * length, next is the first byte not yet written.
+     */
+    static class Segment {
+
+        final long mStart;
+
+        final long mEnd;
+
+        volatile long mNext;
+
+        Segment(long start, long end, long next) {
+            mStart = start;
+            mEnd = end;
+            mNext = next;
+        }
+
+        boolean isDone() {
+            return mEnd >= 0 && mNext > mEnd;
+        }
+    }
+
+    /**
+     * What is needed to pick a download up again, kept as json next to the other checkpoints.
+     */
+    private static class Checkpoint {
+
+        final String mUrl;
+
+        final File mDestination;
+
+        final long mLength;
+
+        final String mEtag;
+
+        final boolean mRanges;
+
+        final List<Segment> mSegments;
+
+        Checkpoint(String url, File destination, long length, String etag, boolean ranges,
+                   List<Segment> segments) {
+            mUrl = url;
+            mDestination = destination;
+            mLength = length;
+            mEtag = etag;
+            mRanges = ranges;
+            mSegments = segments;
+        }
+
+        long downloaded() {
+            long downloaded = 0;
+            for (Segment segment : mSegments) {
+                downloaded += segment.mNext - segment.mStart;
+            }
+            return downloaded;
+        }
+
+        void write(File file) throws IOException, JSONException {
+            JSONArray segments = new JSONArray();
+            for (Segment segment : mSegments) {
+                segments.put(new JSONArray()
+                        .put(segment.mStart).put(segment.mEnd).put(segment.mNext));
+            }
+            JSONObject json = new JSONObject()
+                    .put("url", mUrl)
+                    .put("destination", mDestination.getAbsolutePath())
+                    .put("length", mLength)
+                    .put("etag", mEtag)
+                    .put("ranges", mRanges)
+                    .put("segments", segments);
+
+            //written aside and renamed, so a crash never leaves half a checkpoint
+            File temp = new File(file.getPath() + ".tmp");
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(json.toString().getBytes(UTF_8));
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to write checkpoint " + file);
+            }
+        }
+
+        static Checkpoint read(File file) throws IOException, JSONException {
+            byte[] bytes = new byte[(int) file.length()];
+            InputStream in = new FileInputStream(file);
+            try {
+                int read = 0;
+                while (read < bytes.length) {
+                    int count = in.read(bytes, read, bytes.length - read);
+                    if (count < 0) throw new IOException("Truncated checkpoint " + file);
+                    read += count;
+                }
+            } finally {
+                in.close();
+            }
+
+            JSONObject json = new JSONObject(new String(bytes, UTF_8));
+            JSONArray array = json.getJSONArray("segments");
+            List<Segment> segments = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                JSONArray segment = array.getJSONArray(i);
+                segments.add(new Segment(segment.getLong(0), segment.getLong(1),
+                        segment.getLong(2)));
+            }
+            return new Checkpoint(json.getString("url"),
+                    new File(json.getString("destination")), json.getLong("length"),
+                    json.isNull("etag") ? null : json.getString("etag"),
+                    json.getBoolean("ranges"), segments);
+        }
+    }
+
+    /**
+     * Thrown when the file on the server changed since the checkpoint was taken.
+     */
+    private static class ChangedException extends IOException {
+
+        ChangedException(String url) {
+            super(url + " changed since the download started");
+        }
+    }
+
+    /**
+     * One attempt at one file. Segment workers write into the part file while the calling
+     * thread reports progress and checkpoints.
+     */
+    private class Transfer implements Subscription {
+
+        private final String mUrl;
+
+        private final File mDestination;
+
+        private final File mPart;
+
+        private final File mCheckpointFile;
+
+        private final Subscriber<? super Progress> mSubscriber;
+
+        private final AtomicBoolean mCancelled = new AtomicBoolean();
+
+        //stops the segment workers of the current attempt, while a restart may still follow
+        private final AtomicBoolean mAborted = new AtomicBoolean();
+
+        Transfer(String url, File destination, Subscriber<? super Progress> subscriber) {
+            mUrl = url;
+            mDestination = destination;
+            mPart = new File(destination.getPath() + ".part");
+            mCheckpointFile = new File(mCheckpointDirectory,
+                    Integer.toHexString(destination.getAbsolutePath().hashCode()) + ".json");
+            mSubscriber = subscriber;
+        }
+
+        void run() throws IOException, JSONException, InterruptedException {
+            File parent = mDestination.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            if (!mCheckpointDirectory.isDirectory() && !mCheckpointDirectory.mkdirs()) {
+                throw new IOException("Unable to create " + mCheckpointDirectory);
+            }
+
+            Checkpoint checkpoint = resumableCheckpoint();
+            try {
+                fetch(checkpoint);
+            } catch (ChangedException e) {
+                Log.i(LOG_TAG, e.getMessage() + ", starting over");
+                discard();
+                fetch(probe());
+            }
+        }
+
+        private boolean isStopped() {
+            return mCancelled.get() || mAborted.get();
+        }
+
+        @Override
+        public void unsubscribe() {
+            mCancelled.set(true);
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return mCancelled.get();
+        }
+
+        private Checkpoint resumableCheckpoint() throws IOException, JSONException {
+            if (mCheckpointFile.exists() && mPart.exists()) {
+                try {
+                    Checkpoint checkpoint = Checkpoint.read(mCheckpointFile);
+                    if (checkpoint.mRanges && checkpoint.mUrl.equals(mUrl)) {
+                        Log.d(LOG_TAG, "Resuming " + mUrl + " at " + checkpoint.downloaded()
+                                + " bytes");
+                        return checkpoint;
+                    }
+                } catch (IOException | JSONException e) {
+                    Log.w(LOG_TAG, "Ignoring checkpoint of " + mUrl, e);
+                }
+            }
+            discard();
+            return probe();
+        }
+
+        //asks for the first byte to learn the length and whether ranges are served
+        private Checkpoint probe() throws IOException, JSONException {
+            Response response = execute(mUrl, 0, 0, null);
+            long length;
+            boolean ranges;
+            try {
+                Matcher range =
+                        CONTENT_RANGE.matcher(nullToEmpty(response.header("Content-Range")));
+                ranges = response.code() == 206 && range.matches();
+                length = ranges ? Long.parseLong(range.group(1)) : response.body().contentLength();
+            } finally {
+                response.body().close();
+            }
+
+            Checkpoint checkpoint = new Checkpoint(mUrl, mDestination, length,
+                    response.header("ETag"), ranges && length > 0, split(length, ranges));
+            checkpoint.write(mCheckpointFile);
+            return checkpoint;
+        }
+
+        private void fetch(final Checkpoint checkpoint)
+                throws IOException, JSONException, InterruptedException {
+            List<Segment> pending = new ArrayList<>();
+            for (Segment segment : checkpoint.mSegments) {
+                if (!segment.isDone()) pending.add(segment);
+            }
+
+            long startedAt = SystemClock.elapsedRealtime();
+            long startedWith = checkpoint.downloaded();
+            if (!pending.isEmpty()) {
+                ExecutorService workers = Executors.newFixedThreadPool(pending.size());
+                CompletionService<Void> completion = new ExecutorCompletionService<>(workers);
+                mAborted.set(false);
+                for (final Segment segment : pending) {
+                    completion.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            fetchWithRetries(checkpoint, segment);
+                            return null;
+                        }
+                    });
+                }
+                workers.shutdown();
+
+                try {
+                    int remaining = pending.size();
+                    while (remaining > 0 && !mCancelled.get()) {
+                        Future<Void> done = completion.poll(CHECKPOINT_INTERVAL_MILLIS,
+                                TimeUnit.MILLISECONDS);
+                        if (done == null) {
+                            checkpoint.write(mCheckpointFile);
+                            emit(checkpoint, startedAt, startedWith);
+                        } else {
+                            remaining--;
+                            //throws as soon as any segment fails
+                            rethrow(done);
+                        }
+                    }
+                } finally {
+                    //after a failure the other segments must not keep writing a file that may
+                    //have changed, so they are stopped before the part file is left alone
+                    mAborted.set(true);
+                    workers.shutdownNow();
+                    workers.awaitTermination(CHECKPOINT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (checkpoint.mRanges) {
+                        checkpoint.write(mCheckpointFile);
+                    }
+                }
+            }
+            if (mCancelled.get()) return;
+
+            emit(checkpoint, startedAt, startedWith);
+            verify(checkpoint);
+        }
+
+        private void fetchWithRetries(Checkpoint checkpoint, Segment segment)
+                throws IOException, InterruptedException {
+            for (int attempt = 1; ; attempt++) {
+                long before = segment.mNext;
+                try {
+                    fetch(checkpoint, segment);
+                    return;
+                } catch (ChangedException e) {
+                    throw e;
+                } catch (IOException e) {
+                    //an attempt that made progress does not count towards the limit
+                    if (checkpoint.mRanges && segment.mNext > before) attempt = 0;
+                    if (attempt >= MAX_ATTEMPTS || isStopped()) throw e;
+                    Log.w(LOG_TAG, "Retrying segment at " + segment.mNext + " of " + mUrl, e);
+                    Thread.sleep(RETRY_DELAY_MILLIS << Math.max(0, attempt - 1));
+                }
+            }
+        }
+
+        private void fetch(Checkpoint checkpoint, Segment segment) throws IOException {
+            Response response = checkpoint.mRanges
+                    ? execute(mUrl, segment.mNext, segment.mEnd, checkpoint.mEtag)
+                    : execute(mUrl, -1, -1, null);
+            RandomAccessFile out = new RandomAccessFile(mPart, "rw");
+            try {
+                if (checkpoint.mRanges && response.code() != 206) {
+                    throw new ChangedException(mUrl);
+                }
+                if (!checkpoint.mRanges) {
+                    segment.mNext = 0;
+                    out.setLength(0);
+                }
+
+                InputStream in = response.body().byteStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                out.seek(segment.mNext);
+                int count;
+                while (!isStopped() && !segment.isDone()
+                        && (count = in.read(buffer, 0, limit(segment, buffer.length))) != -1) {
+                    out.write(buffer, 0, count);
+                    segment.mNext += count;
+                }
+                if (!isStopped() && segment.mEnd >= 0 && !segment.isDone()) {
+                    throw new IOException("Connection closed at " + segment.mNext + " of "
+                            + mUrl);
+                }
+            } finally {
+                out.close();
+                response.body().close();
+            }
+        }
+
+        private void verify(Checkpoint checkpoint) throws IOException {
+            long downloaded = checkpoint.downloaded();
+            if (!isComplete(mPart.length(), checkpoint.mLength, downloaded)) {
+                discard();
+                throw new IOException("Downloaded " + mPart.length() + " bytes of " + mUrl
+                        + ", expected " + (checkpoint.mLength > 0 ? checkpoint.mLength
+                        : downloaded));
+            }
+            if (mDestination.exists() && !mDestination.delete()) {
+                throw new IOException("Unable to replace " + mDestination);
+            }
+            if (!mPart.renameTo(mDestination)) {
+                throw new IOException("Unable to move " + mPart + " to " + mDestination);
+            }
+            mCheckpointFile.delete();
+        }
+
+        private void emit(Checkpoint checkpoint, long startedAt, long startedWith) {
+            long downloaded = checkpoint.downloaded();
+            long elapsed = Math.max(1, SystemClock.elapsedRealtime() - startedAt);
+            mSubscriber.onNext(new Progress(downloaded, checkpoint.mLength,
+                    (downloaded - startedWith) * 1000f / elapsed));
+        }
+
+        private void discard() {
+            mPart.delete();
+            mCheckpointFile.delete();
+        }
+    }
+
+    /**
+     * Splits a file into at most {@link #MAX_SEGMENTS} segments of at least
+     * {@link #MIN_SEGMENT_BYTES}, or into one segment if it cannot be fetched in ranges.
+     *
+     * @param length size of the file, or -1 if the server did not tell
+     */
+    static List<Segment> split(long length, boolean ranges) {
+        List<Segment> segments = new ArrayList<>();
+        if (ranges && length > 0) {
+            int count = (int) Math.max(1, Math.min(MAX_SEGMENTS, length / MIN_SEGMENT_BYTES));
+            long size = length / count;
+            for (int i = 0; i < count; i++) {
+                long start = i * size;
+                long end = i == count - 1 ? length - 1 : start + size - 1;
+                segments.add(new Segment(start, end, start));
+            }
+        } else {
+            segments.add(new Segment(0, length > 0 ? length - 1 : -1, 0));
+        }
+        return segments;
+    }
+
+    //without a length from the server, everything that was read makes up the file
+    static boolean isComplete(long partLength, long length, long downloaded) {
+        long expected = length > 0 ? length : downloaded;
+        return partLength == expected && downloaded == expected;
+    }
+
+    private static int limit(Segment segment, int bufferSize) {
+        if (segment.mEnd < 0) return bufferSize;
+        return (int) Math.min(bufferSize, segment.mEnd + 1 - segment.mNext);
+    }
+
+    private static void rethrow(Future<Void> future) throws IOException, InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
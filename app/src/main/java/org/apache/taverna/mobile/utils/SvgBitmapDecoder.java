@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapResource;
+import com.bumptech.glide.request.target.Target;
+import com.caverock.androidsvg.SVG;
+import com.caverock.androidsvg.SVGParseException;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses an SVG from an {@link InputStream} and rasterises it into a bitmap that fits the
+ * requested size, keeping the aspect ratio of the document. Runs on Glide's decode threads, and
+ * the bitmap it returns is what ends up in the memory and result disk caches.
+ */
+public class SvgBitmapDecoder implements ResourceDecoder<InputStream, Bitmap> {
+
+    //used when the document has neither a view box nor a size
+    private static final int DEFAULT_SIZE = 512;
+
+    private final BitmapPool mBitmapPool;
+
+    public SvgBitmapDecoder(BitmapPool bitmapPool) {
+        mBitmapPool = bitmapPool;
+    }
+
+    @Override
+    public Resource<Bitmap> decode(InputStream source, int width, int height)
+            throws IOException {
+        SVG svg;
+        try {
+            svg = SVG.getFromInputStream(source);
+        } catch (SVGParseException ex) {
+            throw new IOException("Cannot load SVG from stream", ex);
+        }
+
+        RectF viewBox = svg.getDocumentViewBox();
+        float documentWidth = viewBox != null ? viewBox.width() : svg.getDocumentWidth();
+        float documentHeight = viewBox != null ? viewBox.height() : svg.getDocumentHeight();
+        if (documentWidth <= 0 || documentHeight <= 0) {
+            documentWidth = DEFAULT_SIZE;
+            documentHeight = DEFAULT_SIZE;
+        }
+        if (viewBox == null) {
+            svg.setDocumentViewBox(0, 0, documentWidth, documentHeight);
+        }
+
+        float scale = 1f;
+        if (width != Target.SIZE_ORIGINAL && height != Target.SIZE_ORIGINAL) {
+            scale = Math.min(width / documentWidth, height / documentHeight);
+        }
+        int bitmapWidth = Math.max(1, Math.round(documentWidth * scale));
+        int bitmapHeight = Math.max(1, Math.round(documentHeight * scale));
+
+        Bitmap bitmap = mBitmapPool.get(bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
+        }
+        svg.renderToCanvas(new Canvas(bitmap), new RectF(0, 0, bitmapWidth, bitmapHeight));
+
+        return BitmapResource.obtain(bitmap, mBitmapPool);
+    }
+
+    @Override
+    public String getId() {
+        return "SvgBitmapDecoder.org.apache.taverna.mobile.utils";
+    }
+}
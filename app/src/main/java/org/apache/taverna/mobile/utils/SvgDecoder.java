@@ -42,6 +42,6 @@ public class SvgDecoder implements ResourceDecoder<InputStream, SVG> {
 
     @Override
     public String getId() {
-        return "";
+        return "SvgDecoder.org.apache.taverna.mobile.utils";
     }
 }
\ No newline at end of file
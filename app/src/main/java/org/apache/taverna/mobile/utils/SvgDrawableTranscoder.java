@@ -40,6 +40,6 @@ public class SvgDrawableTranscoder implements ResourceTranscoder<SVG, PictureDra
 
     @Override
     public String getId() {
-        return "";
+        return "SvgDrawableTranscoder.org.apache.taverna.mobile.utils";
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.apache.taverna.mobile.utils.PriorityExecutor.Priority;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Shared background pools, one per kind of work, so a slow download cannot hold up disk work
+ * and the other way round. Use them with {@code AsyncTask.executeOnExecutor} instead of
+ * {@code AsyncTask.execute}, which runs every task of the app on one serial thread.
+ * {@link #getStats()} shows how long work waited in each pool.
+ */
+public final class TaskExecutors {
+
+    private static final PriorityExecutor NETWORK = new PriorityExecutor("network", 4);
+
+    private static final PriorityExecutor DISK = new PriorityExecutor("disk", 2);
+
+    private TaskExecutors() {
+    }
+
+    public static Executor network(Priority priority) {
+        return NETWORK.withPriority(priority);
+    }
+
+    public static Executor disk(Priority priority) {
+        return DISK.withPriority(priority);
+    }
+
+    /**
+     * Runs one step of a task on another pool and waits for it, e.g. reading a file in the
+     * middle of an upload. Must not be called from a thread of the pool it hands the step to.
+     */
+    public static <T> T await(Executor executor, Callable<T> step) throws IOException {
+        FutureTask<T> future = new FutureTask<>(step);
+        executor.execute(future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + step);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * @return queue depth and wait time of every pool
+     */
+    public static String getStats() {
+        return NETWORK + " " + DISK;
+    }
+}
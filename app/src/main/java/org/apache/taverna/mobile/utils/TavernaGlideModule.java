@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.module.GlideModule;
+
+import org.apache.taverna.mobile.TavernaApplication;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.support.v4.app.ActivityManagerCompat;
+import android.util.Log;
+
+/**
+ * Configures the single Glide instance every screen loads images through. Memory cache and
+ * bitmap pool are sized from the device memory class, images are cached on disk in their own
+ * directory under a fixed budget and bitmaps are decoded as ARGB_8888 unless a request asks for
+ * something else, as list row previews do. The memory cache and bitmap pool are trimmed through
+ * the application's {@link MemoryPressureCoordinator}. Registered in AndroidManifest.xml.
+ */
+public class TavernaGlideModule implements GlideModule {
+
+    public static final String DISK_CACHE_DIR = "taverna_images";
+
+    public static final int DISK_CACHE_SIZE = 50 * 1024 * 1024;
+
+    private static final String LOG_TAG = TavernaGlideModule.class.getSimpleName();
+
+    //fractions of the per app heap limit given to decoded images
+    private static final int MEMORY_CACHE_DIVIDER = 8;
+    private static final int BITMAP_POOL_DIVIDER = 12;
+    private static final int LOW_RAM_DIVIDER = 2;
+
+    @Override
+    public void applyOptions(Context context, GlideBuilder builder) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int heapBytes = activityManager.getMemoryClass() * 1024 * 1024;
+
+        int memoryCacheSize = heapBytes / MEMORY_CACHE_DIVIDER;
+        int bitmapPoolSize = heapBytes / BITMAP_POOL_DIVIDER;
+        if (ActivityManagerCompat.isLowRamDevice(activityManager)) {
+            memoryCacheSize /= LOW_RAM_DIVIDER;
+            bitmapPoolSize /= LOW_RAM_DIVIDER;
+        }
+
+        Log.d(LOG_TAG, "Glide memory cache " + memoryCacheSize + " bytes, bitmap pool "
+                + bitmapPoolSize + " bytes");
+
+        final TrimmableResourceCache memoryCache = new TrimmableResourceCache(memoryCacheSize);
+        final LruBitmapPool bitmapPool = new LruBitmapPool(bitmapPoolSize);
+        TavernaApplication.getMemoryPressureCoordinator().register("Glide",
+                new MemoryPressureCoordinator.TrimmableCache() {
+                    @Override
+                    public long trim(float fraction) {
+                        //evicted bitmaps go to the pool, so trim the pool afterwards
+                        long released = memoryCache.trim(fraction);
+                        if (fraction >= 1f) {
+                            bitmapPool.clearMemory();
+                        } else {
+                            bitmapPool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+                        }
+                        return released;
+                    }
+                });
+
+        builder.setMemoryCache(memoryCache)
+                .setBitmapPool(bitmapPool)
+                .setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR,
+                        DISK_CACHE_SIZE))
+                //Glide would otherwise default to RGB_565 for every request
+                .setDecodeFormat(DecodeFormat.PREFER_ARGB_8888);
+    }
+
+    @Override
+    public void registerComponents(Context context, Glide glide) {
+    }
+
+    /**
+     * Memory cache that can drop a fraction of its contents. Only resources leaving this cache
+     * are counted as released; the bitmap pool is trimmed too but does not report its size.
+     */
+    private static class TrimmableResourceCache extends LruResourceCache {
+
+        TrimmableResourceCache(int size) {
+            super(size);
+        }
+
+        long trim(float fraction) {
+            int before = getCurrentSize();
+            trimToSize((int) (before * (1f - fraction)));
+            return before - getCurrentSize();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.model.PlayerWorkflow;
+import org.apache.taverna.mobile.data.remote.PlayerConfig;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import retrofit2.Response;
+
+/**
+ * Remembers which Player workflow every uploaded workflow file became, by SHA-256 of the file
+ * and per Player url, so running the same file again reuses the Player workflow instead of
+ * uploading a duplicate. A remembered workflow is looked up on the Player before it is reused
+ * and forgotten if it is gone.
+ */
+public class UploadedWorkflows {
+
+    private static final String LOG_TAG = UploadedWorkflows.class.getSimpleName();
+
+    private static final String PREFERENCES_NAME = "uploaded_workflows";
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final SharedPreferences mPreferences;
+
+    public UploadedWorkflows(Context context) {
+        mPreferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return hex SHA-256 of the file content, read in a stream
+     */
+    public static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Looks for the Player workflow a file with this hash was uploaded as. Blocks, call it off
+     * the main thread.
+     *
+     * @return the Player's current copy of that workflow, or null if the file has to be uploaded
+     */
+    @Nullable
+    public PlayerWorkflow find(String hash) {
+        String key = key(TavernaApplication.getPlayerApiManager().getConfig(), hash);
+        String id = mPreferences.getString(key, null);
+        if (id == null) return null;
+
+        try {
+            Response<PlayerWorkflow> response = TavernaApplication.getPlayerApiManager()
+                    .getPlayerService().getWorkflow(id).execute();
+            if (response.code() == HttpURLConnection.HTTP_NOT_FOUND) {
+                Log.i(LOG_TAG, "Player workflow " + id + " is gone, uploading again");
+                mPreferences.edit().remove(key).apply();
+                return null;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Unexpected response " + response.code()
+                        + " for Player workflow " + id);
+            }
+            return response.body();
+        } catch (IOException | RuntimeException e) {
+            //an upload too many is better than a run of a workflow that may not exist
+            Log.w(LOG_TAG, "Unable to check Player workflow " + id, e);
+            return null;
+        }
+    }
+
+    /**
+     * Records the Player workflow a file was uploaded as.
+     *
+     * @param workflow the Player workflow the upload created
+     */
+    public void remember(String hash, PlayerWorkflow workflow) {
+        mPreferences.edit()
+                .putString(key(TavernaApplication.getPlayerApiManager().getConfig(), hash),
+                        String.valueOf(workflow.getId()))
+                .apply();
+    }
+
+    private static String key(PlayerConfig config, String hash) {
+        return config.getBaseUrl() + " " + hash;
+    }
+}
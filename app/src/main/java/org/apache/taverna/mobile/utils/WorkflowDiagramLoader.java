@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import com.bumptech.glide.GenericRequestBuilder;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.model.StreamEncoder;
+import com.bumptech.glide.load.resource.bitmap.BitmapEncoder;
+import com.bumptech.glide.load.resource.bitmap.GlideBitmapDrawable;
+import com.bumptech.glide.load.resource.bitmap.StreamBitmapDecoder;
+import com.bumptech.glide.load.resource.file.FileToStreamDecoder;
+import com.bumptech.glide.load.resource.transcode.GlideBitmapDrawableTranscoder;
+import com.bumptech.glide.load.resource.transcode.UnitTranscoder;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.signature.StringSignature;
+import com.caverock.androidsvg.SVG;
+
+import org.apache.taverna.mobile.R;
+import org.apache.taverna.mobile.customviews.WorkflowPreviewImageView;
+import org.apache.taverna.mobile.data.model.Workflow;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Renders myExperiment workflow SVG diagrams. The SVG is parsed and rasterised by
+ * {@link SvgBitmapDecoder} at the size of the target view on Glide's decode threads. The
+ * rasterised result is cached in memory and on disk, keyed by SVG url, target size and workflow
+ * version, so reopening a diagram decodes a PNG instead of parsing the SVG again. The SVG itself
+ * is kept on disk as the source of both requests. Zoomable diagrams additionally get the parsed
+ * SVG, read from that source and kept out of the memory cache, so
+ * {@link WorkflowPreviewImageView} can render sharp tiles of the zoomed in region.
+ */
+public final class WorkflowDiagramLoader {
+
+    //pending svg request of each view, only touched on the main thread
+    private static final Map<WorkflowPreviewImageView, Target<SVG>> SVG_TARGETS =
+            new WeakHashMap<>();
+
+    private WorkflowDiagramLoader() {
+    }
+
+    /**
+     * Loads the rasterised diagram as the base layer and, once it is shown, hands the parsed SVG
+     * to the view for tiled rendering while zoomed in.
+     */
+    public static void loadZoomableDiagram(final Context context, final Workflow workflow,
+                                           final WorkflowPreviewImageView target) {
+        //a request from an earlier bind must not deliver its svg into the view
+        Target<SVG> previous = SVG_TARGETS.remove(target);
+        if (previous != null) Glide.clear(previous);
+        target.setDiagram(null);
+        diagramRequest(context, workflow)
+                .placeholder(R.drawable.placeholder)
+                .error(R.drawable.placeholder)
+                .listener(new RequestListener<String, GlideBitmapDrawable>() {
+                    @Override
+                    public boolean onException(Exception e, String model,
+                                               Target<GlideBitmapDrawable> glideTarget,
+                                               boolean isFirstResource) {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onResourceReady(GlideBitmapDrawable resource, String model,
+                                                   Target<GlideBitmapDrawable> glideTarget,
+                                                   boolean isFromMemoryCache,
+                                                   boolean isFirstResource) {
+                        if (SVG_TARGETS.containsKey(target)) return false;
+                        SimpleTarget<SVG> svgTarget = new SimpleTarget<SVG>() {
+                            @Override
+                            public void onResourceReady(SVG svg,
+                                                        GlideAnimation<? super SVG> animation) {
+                                if (SVG_TARGETS.get(target) != this) return;
+                                SVG_TARGETS.remove(target);
+                                target.setDiagram(svg);
+                            }
+                        };
+                        SVG_TARGETS.put(target, svgTarget);
+                        svgRequest(context, workflow).into(svgTarget);
+                        return false;
+                    }
+                })
+                .into(target);
+    }
+
+    /**
+     * Request for the rasterised diagram of a workflow, for callers that need their own target
+     * or size.
+     */
+    public static GenericRequestBuilder<String, InputStream, Bitmap, GlideBitmapDrawable>
+    diagramRequest(Context context, Workflow workflow) {
+        BitmapPool bitmapPool = Glide.get(context).getBitmapPool();
+
+        return Glide.with(context)
+                .using(Glide.buildStreamModelLoader(String.class, context), InputStream.class)
+                .from(String.class)
+                .as(Bitmap.class)
+                .transcode(new GlideBitmapDrawableTranscoder(context), GlideBitmapDrawable.class)
+                .decoder(new SvgBitmapDecoder(bitmapPool))
+                .sourceEncoder(new StreamEncoder())
+                .encoder(new BitmapEncoder(Bitmap.CompressFormat.PNG, 100))
+                .cacheDecoder(new FileToStreamDecoder<Bitmap>(new CachedDiagramDecoder(bitmapPool)))
+                //the source is kept too, so the zoomable svg request reads it from disk
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .signature(versionKey(workflow))
+                .load(workflow.getSvgUri());
+    }
+
+    private static GenericRequestBuilder<String, InputStream, SVG, SVG>
+    svgRequest(Context context, Workflow workflow) {
+        return Glide.with(context)
+                .using(Glide.buildStreamModelLoader(String.class, context), InputStream.class)
+                .from(String.class)
+                .as(SVG.class)
+                .transcode(UnitTranscoder.<SVG>get(), SVG.class)
+                .decoder(new SvgDecoder())
+                .sourceEncoder(new StreamEncoder())
+                .cacheDecoder(new FileToStreamDecoder<SVG>(new SvgDecoder()))
+                //a parsed document is counted as one byte, so it stays out of the memory cache
+                //whose budget and trimming it would escape
+                .skipMemoryCache(true)
+                .diskCacheStrategy(DiskCacheStrategy.SOURCE)
+                .signature(versionKey(workflow))
+                .load(workflow.getSvgUri());
+    }
+
+    //the svg url stays the same when a new version of a workflow is uploaded
+    private static Key versionKey(Workflow workflow) {
+        return new StringSignature(workflow.getVersion() + "/" + workflow.getUpdatedAt());
+    }
+
+    /**
+     * Glide decodes the result and the source cache files with the same decoder, so this tells
+     * the PNG written for a rasterised result from the SVG kept as source.
+     */
+    private static class CachedDiagramDecoder implements ResourceDecoder<InputStream, Bitmap> {
+
+        //first byte of the PNG signature, never the start of an xml document
+        private static final int PNG_FIRST_BYTE = 0x89;
+
+        private final StreamBitmapDecoder mResultDecoder;
+
+        private final SvgBitmapDecoder mSourceDecoder;
+
+        CachedDiagramDecoder(BitmapPool bitmapPool) {
+            mResultDecoder = new StreamBitmapDecoder(bitmapPool, DecodeFormat.PREFER_ARGB_8888);
+            mSourceDecoder = new SvgBitmapDecoder(bitmapPool);
+        }
+
+        @Override
+        public Resource<Bitmap> decode(InputStream source, int width, int height)
+                throws IOException {
+            InputStream in = new BufferedInputStream(source);
+            in.mark(1);
+            int first = in.read();
+            in.reset();
+            return first == PNG_FIRST_BYTE ? mResultDecoder.decode(in, width, height)
+                    : mSourceDecoder.decode(in, width, height);
+        }
+
+        @Override
+        public String getId() {
+            return "CachedDiagramDecoder.org.apache.taverna.mobile.utils";
+        }
+    }
+}
@@ -5,41 +5,34 @@ package org.apache.taverna.mobile.utils;
  */
 
 import org.apache.taverna.mobile.R;
-import org.apache.taverna.mobile.tavernamobile.TavernaPlayerAPI;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.model.PlayerWorkflow;
+import org.apache.taverna.mobile.data.model.RunFramework;
+import org.apache.taverna.mobile.utils.PriorityExecutor.Priority;
 
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.os.AsyncTask;
-import android.util.Base64;
 import android.util.Log;
 import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.ScrollView;
 import android.widget.TextView;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Read the selected xml file from storage and upload to player to generate workflowRun
  */
-public class WorkflowOpen extends AsyncTask<String, Void, String> {
+public class WorkflowOpen extends AsyncTask<String, Integer, PlayerWorkflow> {
 
     private static final String TAG = "WorkflowOpen";
-    TavernaPlayerAPI tavernaPlayerAPI = new TavernaPlayerAPI();
     private Context context;
     private ProgressDialog progressDialog;
 
@@ -57,79 +50,58 @@ public class WorkflowOpen extends AsyncTask<String, Void, String> {
 
     /**
      * @param params path to workflow file to upload to player
-     * @return run framework used to create a new workflow run
+     * @return the Player workflow to create a new run from, or null if the upload failed
      */
     @Override
-    protected String doInBackground(String... params) {
-        StringBuffer sb = new StringBuffer(55);
-        String str = "";
+    protected PlayerWorkflow doInBackground(String... params) {
         try {
-
-            //prepare connection requests
-            File objectFile = new File(params[0]); //the resource xml file representing the
+            final File objectFile = new File(params[0]); //the resource xml file representing the
             // workflow to be uploaded to the player
-            String playerurl = new TavernaPlayerAPI(this.context).getplayerBaseUrl() + "workflows" +
-                    ".json";
-            URL posturl = new URL(playerurl);
-            HttpURLConnection connection = (HttpURLConnection) posturl.openConnection();
-
-            String user = tavernaPlayerAPI.getPlayerUserName(this.context) + ":" +
-                    tavernaPlayerAPI.getPlayerUserPassword(this.context);
-            String basicAuth = "Basic " + Base64.encodeToString(user.getBytes(Charset.forName
-                    ("UTF-8")), Base64.DEFAULT);
-            //read the file from remote resource and encode the stream with a base64 algorithm
-
-            try {
-                BufferedReader br = new BufferedReader(new FileReader(objectFile));
-
-                while ((str = br.readLine()) != null) {
-                    sb.append(str);
-                    sb.append('\n');
-                }
-                br.close();
-            } catch (IOException e) {
-                Log.e(TAG, "doInBackground: ", e);
+            //a file that was uploaded before is run from the workflow the player already has
+            UploadedWorkflows uploadedWorkflows = TavernaApplication.getUploadedWorkflows();
+            //this task runs on the network pool, reading the whole file belongs on the disk pool
+            String hash = TaskExecutors.await(TaskExecutors.disk(Priority.HIGH),
+                    new Callable<String>() {
+                        @Override
+                        public String call() throws IOException {
+                            return UploadedWorkflows.hash(objectFile);
+                        }
+                    });
+            PlayerWorkflow existing = uploadedWorkflows.find(hash);
+            if (existing != null) {
+                Log.i(TAG, "Reusing player workflow for " + objectFile.getName());
+                return existing;
             }
 
-            String data = "{\"document\":\"data:application/octet-stream;base64," +
-                    Base64.encodeToString(sb.toString().getBytes(Charset.forName("UTF-8")),
-                            Base64.URL_SAFE |
-                            Base64.NO_WRAP).replace('-', '+') + "\"}";
-            String post = "{\"workflow\":" + data + "}";
-            //clear sb so that we can use it again to fetch results from this post request
-            sb.delete(0, sb.length() - 1);
-            Log.i(TAG, "BODY=>" + post);
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Authorization", basicAuth);
-            connection.setRequestProperty("Accept", "*/*");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Content-Encoding", "UTF-8");
-            connection.setUseCaches(false);
-            connection.setDoOutput(true);
-            connection.connect(); //send request
-
-            DataOutputStream dos = new DataOutputStream(connection.getOutputStream());
-
-            dos.writeBytes(post); //write post data which is a formatted json data representing
-            // body of workflow
-
-            dos.flush();
-            dos.close();
-
-            InputStream dis = connection.getInputStream();
-            BufferedReader br = new BufferedReader(new InputStreamReader(dis, "UTF-8"));
-            while ((str = br.readLine()) != null) {
-                sb.append(str);
-            }
-            Log.i(TAG, "Post Response Code: " + connection.getResponseCode());
-            Log.i(TAG, "Post response message: " + connection.getResponseMessage());
-            connection.disconnect();
+            //the file is encoded while it is sent, it is never held in memory as a whole
+            PlayerWorkflow response = WorkflowUploader.upload(new FileInputStream(objectFile),
+                    objectFile.length(),
+                    new WorkflowUploader.ProgressListener() {
+                        private int mPercent = -1;
+
+                        @Override
+                        public void onProgress(long uploaded, long total) {
+                            int percent = total > 0 ? (int) (uploaded * 100 / total) : -1;
+                            if (percent != mPercent) {
+                                mPercent = percent;
+                                publishProgress(percent);
+                            }
+                        }
+                    });
+            Log.i(TAG, "Uploaded " + objectFile.length() + " bytes");
+            uploadedWorkflows.remember(hash, response);
+            return response;
         } catch (IOException e) {
             Log.e(TAG, "doInBackground: ", e);
-            sb.append("Error reading remote workflow. Please try again later");
+            return null;
         }
+    }
 
-        return sb.toString();
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        if (values[0] >= 0) {
+            progressDialog.setMessage("Uploading Workflow ... " + values[0] + "%");
+        }
     }
 
     /**
@@ -138,21 +110,16 @@ public class WorkflowOpen extends AsyncTask<String, Void, String> {
      * can be used to generate a run from thw workflow. A run is started that would fetch and build
      * a sample UI for a workflow run to be executed
      *
-     * @param s the json result that describes the uploaded workflow
+     * @param workflow the uploaded workflow, or null if there is none to run
      */
     @Override
-    protected void onPostExecute(String s) {
+    protected void onPostExecute(PlayerWorkflow workflow) {
         progressDialog.dismiss();
-        Log.i(TAG, s);
-        s = s.substring(1, s.length());
-        try {
-            JSONObject workflowJson = new JSONObject(s);
-            new WorkflowRunTask(this.context).execute(workflowJson.getString("id"));
-
-        } catch (JSONException e) {
-            Log.e(TAG, "onPostExecute: ", e);
-        }
+        if (workflow == null) return;
 
+        new WorkflowRunTask(this.context).executeOnExecutor(
+                TaskExecutors.network(Priority.HIGH), String.valueOf(workflow.getId()),
+                workflow.getUpdatedAt());
     }
 
     //create and return a new TextView
@@ -174,7 +141,7 @@ public class WorkflowOpen extends AsyncTask<String, Void, String> {
         return edt;
     }
 
-    private class WorkflowRunTask extends AsyncTask<String, Void, String> {
+    private class WorkflowRunTask extends AsyncTask<String, Void, RunFramework> {
 
         private Context context;
         private AlertDialog.Builder alertDialogBuilder;
@@ -191,47 +158,25 @@ public class WorkflowOpen extends AsyncTask<String, Void, String> {
             progressDialog.show();
         }
 
+        /**
+         * @param params Player workflow id and version, the version may be null
+         */
         @Override
-        protected String doInBackground(String... params) {
-            StringBuffer sb = new StringBuffer();
+        protected RunFramework doInBackground(String... params) {
             try {
-
-                URL workflowurl = new URL(new TavernaPlayerAPI(this.context)
-                        .mPlayerRunFrameworkUrl + params[0]);
-                HttpURLConnection connection = (HttpURLConnection) workflowurl.openConnection();
-                String userpass = tavernaPlayerAPI.getPlayerUserName(this.context) + ":" +
-                        tavernaPlayerAPI.getPlayerUserPassword(this.context);
-                String basicAuth = "Basic " + Base64.encodeToString(userpass.getBytes(Charset
-                        .forName("UTF-8")), Base64
-                        .DEFAULT);
-
-                connection.setRequestProperty("Authorization", basicAuth);
-                connection.setRequestProperty("Accept", "application/json");
-                connection.setRequestMethod("GET");
-                connection.connect(); //send request
-                Log.i("RESPONSE Code", "" + connection.getResponseCode());
-                Log.i("RESPONSE Message", "" + connection.getResponseMessage());
-                Log.i("Authorization ", "" + connection.getRequestProperty("Authorization"));
-
-                InputStream dis = connection.getInputStream();
-                BufferedReader br = new BufferedReader(new InputStreamReader(dis, "UTF-8"));
-
-                String jsonData = "";
-                while ((jsonData = br.readLine()) != null) {
-                    sb.append(jsonData);
-                }
-                dis.close();
-                br.close();
-                return sb.toString();
-
+                //repeat runs of the same workflow version skip the round trip
+                return TavernaApplication.getRunFrameworkCache().get(params[0], params[1]);
             } catch (IOException ex) {
                 Log.e(TAG, "doInBackground: ", ex);
             }
-            return sb.toString();
+            return null;
         }
 
         @Override
-        protected void onPostExecute(String result) {
+        protected void onPostExecute(final RunFramework framework) {
+            progressDialog.dismiss();
+            if (framework == null) return;
+
             //show the skeleton to the user in a dialog box
             final Context ctx = this.context;
             final LinearLayout ll = new LinearLayout(ctx);
@@ -239,72 +184,50 @@ public class WorkflowOpen extends AsyncTask<String, Void, String> {
             ll.setOrientation(LinearLayout.VERTICAL);
             sv.addView(ll);
 
-            try {
-                final JSONObject json = new JSONObject(result); //main server response json
-                JSONObject mjson = json.getJSONObject("run"); //main framework response json
-                String name = mjson.getString("name"); //a name that can be configured or edited
-                // for the new run to be created
-                ll.addView(createTextView(ctx, name));
-                final JSONArray attr_array = mjson.getJSONArray("inputs_attributes");
-                for (int i = 0; i < attr_array.length(); i++) {
-                    JSONObject obj = attr_array.getJSONObject(i);
-                    ll.addView(createTextView(ctx, obj.getString("name")));
-                    ll.addView(createEditText(ctx, i));
-                }
-
-                alertDialogBuilder = new AlertDialog.Builder(ctx);
-                alertDialogBuilder.setView(sv);
-                //               alertDialogBuilder.setMessage(result);
-                alertDialogBuilder.setIcon(ctx.getResources().getDrawable(R.mipmap.ic_launcher));
-                alertDialogBuilder.setTitle("New Workflow Run");
-                alertDialogBuilder.setPositiveButton("Execute", new DialogInterface
-                        .OnClickListener() {
-                    @Override
-                    public void onClick(DialogInterface dialogInterface, int i) {
-                        int n = attr_array.length();
-                        for (int j = 0; j < n; j++) {
-                            try {
-                                EditText inputText = (EditText) ll.findViewById(j);
-                                String value = inputText.getText().toString(); //get input entry
-                                // entered by the user
-                                JSONObject jojb = attr_array.getJSONObject(j); //get the input
-                                // attributes provided by the skeleton
-                                jojb.put("value", value); //replace value field in object with
-                                // the entry provided by the user
-                                attr_array.put(j, jojb); //replace the input entry with the new
-                                // name/input json object
-
-                            } catch (JSONException e) {
-                                Log.e(TAG, "onClick: ", e);
-                            }
-
-                        }
-                        try {
-                            json.put("inputs_attributes", attr_array);
-                            Log.i("RUN FRAMEWORK", json.toString(2));
-                            //start a run task to execute the run.
-                            new RunTask(ctx).execute(json.toString());
-                        } catch (JSONException e) {
-                            Log.e(TAG, "onClick: ", e);
-                        }
+            //a name that can be configured or edited for the new run to be created
+            ll.addView(createTextView(ctx, framework.getRun().getName()));
+            final List<RunFramework.Input> inputs = framework.getRun().getInputs();
+            for (int i = 0; i < inputs.size(); i++) {
+                ll.addView(createTextView(ctx, inputs.get(i).getName()));
+                ll.addView(createEditText(ctx, i));
+            }
 
+            alertDialogBuilder = new AlertDialog.Builder(ctx);
+            alertDialogBuilder.setView(sv);
+            alertDialogBuilder.setIcon(ctx.getResources().getDrawable(R.mipmap.ic_launcher));
+            alertDialogBuilder.setTitle("New Workflow Run");
+            alertDialogBuilder.setPositiveButton("Execute", new DialogInterface
+                    .OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    for (int j = 0; j < inputs.size(); j++) {
+                        EditText inputText = (EditText) ll.findViewById(j);
+                        //replace the value of the input with the entry provided by the user
+                        inputs.get(j).setValue(inputText.getText().toString());
                     }
-                });
-                alertDialogBuilder.setNegativeButton("Cancel", new DialogInterface
-                        .OnClickListener() {
+                    //start a run task to execute the run.
+                    new RunTask(ctx).executeOnExecutor(TaskExecutors.network(Priority.HIGH),
+                            framework);
+                }
+            });
+            alertDialogBuilder.setNeutralButton("Batch", new DialogInterface
+                    .OnClickListener() {
 
-                    @Override
-                    public void onClick(DialogInterface dialogInterface, int i) {
-                        dialogInterface.dismiss();
-                    }
-                });
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    BatchRunDialog.show(ctx, framework);
+                }
+            });
+            alertDialogBuilder.setNegativeButton("Cancel", new DialogInterface
+                    .OnClickListener() {
 
-                runDialog = alertDialogBuilder.create();
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    dialogInterface.dismiss();
+                }
+            });
 
-            } catch (JSONException e) {
-                Log.e(TAG, "onPostExecute: ", e);
-            }
-            progressDialog.dismiss();
+            runDialog = alertDialogBuilder.create();
             runDialog.show();
         }
     }
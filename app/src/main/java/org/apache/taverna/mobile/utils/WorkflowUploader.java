@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.apache.taverna.mobile.TavernaApplication;
+import org.apache.taverna.mobile.data.model.PlayerWorkflow;
+
+import android.util.Base64;
+import android.util.Base64OutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import retrofit2.Response;
+
+/**
+ * Uploads a workflow document to Taverna Player as a base64 data uri inside the json body. The
+ * document is encoded in small chunks straight into the request body, with a fixed length body
+ * when the document size is known and a chunked one otherwise, so memory use does not depend on
+ * the size of the workflow. The upload goes through the Player service, which authenticates
+ * it.
+ */
+public final class WorkflowUploader {
+
+    /**
+     * Reports bytes of the document read so far, on the uploading thread.
+     */
+    public interface ProgressListener {
+        /**
+         * @param total size of the document, or -1 when it is not known
+         */
+        void onProgress(long uploaded, long total);
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private static final byte[] BODY_PREFIX =
+            "{\"workflow\":{\"document\":\"data:application/octet-stream;base64,".getBytes(UTF_8);
+
+    private static final byte[] BODY_SUFFIX = "\"}}".getBytes(UTF_8);
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private WorkflowUploader() {
+    }
+
+    /**
+     * Posts the document to the player's {@code workflows} and returns the uploaded workflow.
+     * Blocks, so it must not be called on the main thread.
+     *
+     * @param document stream of the workflow document, closed by this method
+     * @param length   size of the document in bytes, or -1 when it is not known
+     */
+    public static PlayerWorkflow upload(InputStream document, long length,
+                                        ProgressListener listener) throws IOException {
+        try {
+            Response<PlayerWorkflow> response = TavernaApplication.getPlayerApiManager()
+                    .getPlayerService()
+                    .createWorkflow(new DocumentBody(document, length, listener))
+                    .execute();
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Unexpected response " + response.code()
+                        + " for the workflow upload");
+            }
+            return response.body();
+        } finally {
+            document.close();
+        }
+    }
+
+    //base64 without line breaks, padded to whole groups of four characters
+    private static long encodedLength(long length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    private static void writeBase64(InputStream document, long length, OutputStream body,
+                                    ProgressListener listener) throws IOException {
+        //the encoder is flushed by close, which must not close the request body yet
+        Base64OutputStream encoder = new Base64OutputStream(new NonClosingOutputStream(body),
+                Base64.NO_WRAP);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long uploaded = 0;
+        int read;
+        while ((read = document.read(buffer)) != -1) {
+            encoder.write(buffer, 0, read);
+            uploaded += read;
+            if (listener != null) listener.onProgress(uploaded, length);
+        }
+        encoder.close();
+    }
+
+    /**
+     * Json request body that encodes the document while it is sent. The document stream can be
+     * read once, so a second attempt to send the body fails instead of posting a truncated one.
+     */
+    private static class DocumentBody extends RequestBody {
+
+        private final InputStream mDocument;
+
+        private final long mLength;
+
+        private final ProgressListener mListener;
+
+        private boolean mWritten;
+
+        DocumentBody(InputStream document, long length, ProgressListener listener) {
+            mDocument = document;
+            mLength = length;
+            mListener = listener;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public long contentLength() {
+            return mLength >= 0
+                    ? BODY_PREFIX.length + encodedLength(mLength) + BODY_SUFFIX.length : -1;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            if (mWritten) throw new IOException("Workflow document already sent");
+            mWritten = true;
+
+            OutputStream body = sink.outputStream();
+            body.write(BODY_PREFIX);
+            writeBase64(mDocument, mLength, body, mListener);
+            body.write(BODY_SUFFIX);
+            body.flush();
+        }
+    }
+
+    private static class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream mOut;
+
+        NonClosingOutputStream(OutputStream out) {
+            mOut = out;
+        }
+
+        @Override
+        public void write(int oneByte) throws IOException {
+            mOut.write(oneByte);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int count) throws IOException {
+            mOut.write(buffer, offset, count);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            mOut.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mOut.flush();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteZipReaderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] TEXT = "workflow output\n".getBytes(UTF_8);
+
+    private MockWebServer mServer;
+
+    private OkHttpClient mClient;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClient = new OkHttpClient();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void listsEntriesFromEndRecord() throws IOException {
+        byte[] random = randomBytes(4096);
+        serve(zip(null, 0, random));
+
+        List<RemoteZipReader.Entry> entries = reader(null).readEntries();
+
+        assertEquals(4, entries.size());
+        assertEquals("out/", entries.get(0).getName());
+        assertTrue(entries.get(0).isDirectory());
+        assertEquals("out/result.txt", entries.get(1).getName());
+        assertFalse(entries.get(1).isDirectory());
+        assertEquals(TEXT.length * 100, entries.get(1).getSize());
+        assertTrue(entries.get(1).getCompressedSize() < entries.get(1).getSize());
+        assertEquals("out/random.bin", entries.get(2).getName());
+        assertEquals(random.length, entries.get(2).getSize());
+        assertEquals(random.length, entries.get(2).getCompressedSize());
+        assertEquals("out/empty.txt", entries.get(3).getName());
+        assertEquals(0, entries.get(3).getSize());
+        //the whole archive fits into the tail, so the directory costs no second request
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void findsEndRecordBeforeComment() throws IOException {
+        serve(zip("archive comment with PK\u0005\u0006 inside", 0, randomBytes(16)));
+
+        assertEquals(4, reader(null).readEntries().size());
+    }
+
+    @Test
+    public void fetchesCentralDirectoryOutsideTail() throws IOException {
+        //long names make the directory larger than the tail asked for first
+        serve(zip(null, 400, randomBytes(16)));
+
+        List<RemoteZipReader.Entry> entries = reader(null).readEntries();
+
+        assertEquals(404, entries.size());
+        assertEquals(name(399), entries.get(403).getName());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void opensStoredAndDeflatedEntries() throws IOException {
+        byte[] random = randomBytes(4096);
+        serve(zip(null, 0, random));
+        RemoteZipReader reader = reader(null);
+        List<RemoteZipReader.Entry> entries = reader.readEntries();
+
+        assertArrayEquals(repeat(TEXT, 100), read(reader.open(entries.get(1))));
+        assertArrayEquals(random, read(reader.open(entries.get(2))));
+        assertArrayEquals(new byte[0], read(reader.open(entries.get(3))));
+    }
+
+    @Test
+    public void sendsAuthorizationAndRanges() throws Exception {
+        serve(zip(null, 0, randomBytes(16)));
+
+        reader("Basic dGF2ZXJuYTp0YXZlcm5h").readEntries();
+
+        RecordedRequest request = mServer.takeRequest();
+        assertEquals("Basic dGF2ZXJuYTp0YXZlcm5h", request.getHeader("Authorization"));
+        assertEquals("bytes=-" + (22 + 0xFFFF), request.getHeader("Range"));
+    }
+
+    @Test
+    public void rejectsServerWithoutRanges() {
+        final byte[] archive = zip(null, 0, randomBytes(16));
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(new Buffer().write(archive));
+            }
+        });
+
+        try {
+            reader(null).readEntries();
+            fail("read without range support");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("ranges"));
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() {
+        serve(randomBytes(1000));
+
+        try {
+            reader(null).readEntries();
+            fail("read a file that is not an archive");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("not a zip archive"));
+        }
+    }
+
+    private RemoteZipReader reader(String authorization) {
+        return new RemoteZipReader(mClient, mServer.url("/runs/1/outputs.zip").toString(),
+                authorization);
+    }
+
+    //answers range requests for the given bytes, as the Player does for run outputs
+    private void serve(final byte[] file) {
+        final Pattern range = Pattern.compile("bytes=(\\d*)-(\\d*)");
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                Matcher matcher = range.matcher(String.valueOf(request.getHeader("Range")));
+                if (!matcher.matches()) {
+                    return new MockResponse().setResponseCode(400);
+                }
+                int from;
+                int to;
+                if (matcher.group(1).isEmpty()) {
+                    from = Math.max(0, file.length - Integer.parseInt(matcher.group(2)));
+                    to = file.length - 1;
+                } else {
+                    from = Integer.parseInt(matcher.group(1));
+                    to = matcher.group(2).isEmpty() ? file.length - 1
+                            : Math.min(file.length - 1, Integer.parseInt(matcher.group(2)));
+                }
+                return new MockResponse()
+                        .setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + from + "-" + to + "/"
+                                + file.length)
+                        .setBody(new Buffer().write(Arrays.copyOfRange(file, from, to + 1)));
+            }
+        });
+    }
+
+    //a directory, a deflated, a stored and an empty entry, then extra entries with long names
+    private static byte[] zip(String comment, int extraEntries, byte[] stored) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ZipOutputStream zip = new ZipOutputStream(bytes);
+            zip.putNextEntry(new ZipEntry("out/"));
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("out/result.txt"));
+            zip.write(repeat(TEXT, 100));
+            zip.closeEntry();
+
+            ZipEntry storedEntry = new ZipEntry("out/random.bin");
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(stored.length);
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+            storedEntry.setCrc(crc.getValue());
+            zip.putNextEntry(storedEntry);
+            zip.write(stored);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("out/empty.txt"));
+            zip.closeEntry();
+
+            for (int i = 0; i < extraEntries; i++) {
+                zip.putNextEntry(new ZipEntry(name(i)));
+                zip.closeEntry();
+            }
+            if (comment != null) {
+                zip.setComment(comment);
+            }
+            zip.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String name(int index) {
+        char[] padding = new char[200];
+        Arrays.fill(padding, 'x');
+        return "out/" + new String(padding) + index + ".txt";
+    }
+
+    private static byte[] repeat(byte[] bytes, int times) {
+        byte[] repeated = new byte[bytes.length * times];
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(bytes, 0, repeated, i * bytes.length, bytes.length);
+        }
+        return repeated;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
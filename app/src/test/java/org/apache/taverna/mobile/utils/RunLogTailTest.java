@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RunLogTailTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private MockWebServer mServer;
+
+    private OkHttpClient mClient;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClient = new OkHttpClient();
+        mUrl = mServer.url("/runs/1/log").toString();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void keepsAsciiWhole() {
+        byte[] bytes = "step 1 done\n".getBytes(UTF_8);
+
+        assertEquals(bytes.length, RunLogTail.completeLength(bytes, bytes.length));
+    }
+
+    @Test
+    public void holdsBackEverySplitOfMultiByteCharacters() {
+        //two, three and four byte sequences
+        for (String character : new String[]{"\u00e9", "\u20ac", "\ud83d\ude00"}) {
+            byte[] bytes = ("log " + character).getBytes(UTF_8);
+            int prefix = "log ".length();
+            for (int length = prefix + 1; length < bytes.length; length++) {
+                assertEquals(character + " cut at " + length, prefix,
+                        RunLogTail.completeLength(bytes, length));
+            }
+            assertEquals(bytes.length, RunLogTail.completeLength(bytes, bytes.length));
+        }
+    }
+
+    @Test
+    public void ignoresBytesPastLength() {
+        byte[] bytes = "ab\u20ac".getBytes(UTF_8);
+
+        assertEquals(2, RunLogTail.completeLength(bytes, 2));
+        assertEquals(2, RunLogTail.completeLength(bytes, 4));
+    }
+
+    @Test
+    public void reassemblesCharactersSplitAcrossReads() throws IOException {
+        String log = "r\u00e9sultat \u20ac \ud83d\ude00 fin";
+        byte[] bytes = log.getBytes(UTF_8);
+        for (int readSize = 1; readSize <= bytes.length; readSize++) {
+            RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(64);
+
+            long appended = RunLogTail.read(new ChunkedInputStream(bytes, readSize), buffer);
+
+            assertEquals("reads of " + readSize, log, buffer.toString());
+            assertEquals(bytes.length, appended);
+        }
+    }
+
+    @Test
+    public void leavesCharacterCutOffAtEndForNextPoll() throws IOException {
+        byte[] bytes = "done \u20ac".getBytes(UTF_8);
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(64);
+
+        long appended = RunLogTail.read(
+                new ChunkedInputStream(Arrays.copyOf(bytes, bytes.length - 1), 4), buffer);
+
+        assertEquals("done ", buffer.toString());
+        assertEquals("done ".length(), appended);
+    }
+
+    @Test
+    public void appendsPartialContentAtOffset() throws Exception {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(64);
+        buffer.append("step 1\n");
+        mServer.enqueue(new MockResponse().setResponseCode(206)
+                .setHeader("Content-Range", "bytes 7-13/14")
+                .setBody("step 2\n"));
+
+        long offset = RunLogTail.fetchAppended(mClient, mUrl, 7, buffer);
+
+        assertEquals(14, offset);
+        assertEquals("step 1\nstep 2\n", buffer.toString());
+        assertEquals("bytes=7-", mServer.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void treatsUnsatisfiableRangeAsNoGrowth() throws Exception {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(64);
+        buffer.append("step 1\n");
+        mServer.enqueue(new MockResponse().setResponseCode(416));
+
+        long offset = RunLogTail.fetchAppended(mClient, mUrl, 7, buffer);
+
+        assertEquals(7, offset);
+        assertEquals("step 1\n", buffer.toString());
+    }
+
+    @Test
+    public void skipsAlreadyReadPartWithoutRangeSupport() throws Exception {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(64);
+        buffer.append("step 1\n");
+        mServer.enqueue(new MockResponse().setBody("step 1\nstep 2\n"));
+
+        long offset = RunLogTail.fetchAppended(mClient, mUrl, 7, buffer);
+
+        assertEquals(14, offset);
+        assertEquals("step 1\nstep 2\n", buffer.toString());
+    }
+
+    @Test
+    public void startsOverWhenLogGotShorter() throws Exception {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(64);
+        buffer.append("step 1\nstep 2\n");
+        mServer.enqueue(new MockResponse().setBody("new\n"));
+
+        long offset = RunLogTail.fetchAppended(mClient, mUrl, 14, buffer);
+
+        assertEquals(0, offset);
+        assertEquals("", buffer.toString());
+    }
+
+    @Test
+    public void failsOnErrorResponse() throws Exception {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(64);
+        mServer.enqueue(new MockResponse().setResponseCode(404));
+
+        try {
+            RunLogTail.fetchAppended(mClient, mUrl, 0, buffer);
+            fail("expected an IOException");
+        } catch (IOException expected) {
+            assertEquals("", buffer.toString());
+        }
+    }
+
+    @Test
+    public void ringBufferKeepsEverythingBelowCapacity() {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(8);
+        buffer.append("abc");
+        buffer.append("de");
+
+        assertEquals("abcde", buffer.toString());
+    }
+
+    @Test
+    public void ringBufferDropsOldestWhenWrapping() {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(8);
+        buffer.append("abcdef");
+        buffer.append("ghij");
+
+        assertEquals("cdefghij", buffer.toString());
+
+        buffer.append("k");
+        assertEquals("defghijk", buffer.toString());
+    }
+
+    @Test
+    public void ringBufferKeepsTailOfLongAppend() {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(4);
+        buffer.append("xy");
+        buffer.append("0123456789");
+
+        assertEquals("6789", buffer.toString());
+    }
+
+    @Test
+    public void ringBufferWrapsManyTimes() {
+        char[] log = new char[1000];
+        for (int i = 0; i < log.length; i++) {
+            log[i] = (char) ('a' + i % 26);
+        }
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(64);
+        for (int i = 0; i < log.length; i += 7) {
+            buffer.append(new String(log, i, Math.min(7, log.length - i)));
+        }
+
+        assertEquals(new String(Arrays.copyOfRange(log, log.length - 64, log.length)),
+                buffer.toString());
+    }
+
+    @Test
+    public void ringBufferStartsOverWhenCleared() {
+        RunLogTail.RingBuffer buffer = new RunLogTail.RingBuffer(4);
+        buffer.append("abcdef");
+        buffer.clear();
+
+        assertEquals("", buffer.toString());
+
+        buffer.append("gh");
+        assertEquals("gh", buffer.toString());
+    }
+
+    /**
+     * Hands out at most a fixed number of bytes per read, like a slow connection.
+     */
+    private static class ChunkedInputStream extends InputStream {
+
+        private final byte[] mBytes;
+
+        private final int mChunk;
+
+        private int mPosition;
+
+        ChunkedInputStream(byte[] bytes, int chunk) {
+            mBytes = bytes;
+            mChunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return mPosition < mBytes.length ? mBytes[mPosition++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (mPosition == mBytes.length) return -1;
+            int count = Math.min(Math.min(length, mChunk), mBytes.length - mPosition);
+            System.arraycopy(mBytes, mPosition, buffer, offset, count);
+            mPosition += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.taverna.mobile.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedDownloaderTest {
+
+    @Test
+    public void splitsLargeFileIntoMaxSegments() {
+        long length = SegmentedDownloader.MIN_SEGMENT_BYTES * 10 + 3;
+        List<SegmentedDownloader.Segment> segments = SegmentedDownloader.split(length, true);
+
+        assertEquals(SegmentedDownloader.MAX_SEGMENTS, segments.size());
+        assertCovers(segments, length);
+    }
+
+    @Test
+    public void keepsSegmentsAboveMinimumSize() {
+        long length = SegmentedDownloader.MIN_SEGMENT_BYTES * 2 + 1;
+        List<SegmentedDownloader.Segment> segments = SegmentedDownloader.split(length, true);
+
+        assertEquals(2, segments.size());
+        assertCovers(segments, length);
+        for (SegmentedDownloader.Segment segment : segments) {
+            assertTrue(segment.mEnd + 1 - segment.mStart >= SegmentedDownloader.MIN_SEGMENT_BYTES);
+        }
+    }
+
+    @Test
+    public void fetchesSmallFileInOneSegment() {
+        List<SegmentedDownloader.Segment> segments = SegmentedDownloader.split(100, true);
+
+        assertEquals(1, segments.size());
+        assertCovers(segments, 100);
+    }
+
+    @Test
+    public void fetchesWithoutRangesInOneSegment() {
+        long length = SegmentedDownloader.MIN_SEGMENT_BYTES * 10;
+        List<SegmentedDownloader.Segment> segments = SegmentedDownloader.split(length, false);
+
+        assertEquals(1, segments.size());
+        assertCovers(segments, length);
+    }
+
+    @Test
+    public void leavesUnknownLengthOpenEnded() {
+        List<SegmentedDownloader.Segment> segments = SegmentedDownloader.split(-1, false);
+
+        assertEquals(1, segments.size());
+        assertEquals(0, segments.get(0).mStart);
+        assertEquals(-1, segments.get(0).mEnd);
+        assertFalse(segments.get(0).isDone());
+    }
+
+    @Test
+    public void segmentIsDoneOncePastItsEnd() {
+        SegmentedDownloader.Segment segment = new SegmentedDownloader.Segment(10, 19, 10);
+        assertFalse(segment.isDone());
+
+        segment.mNext = 19;
+        assertFalse(segment.isDone());
+
+        segment.mNext = 20;
+        assertTrue(segment.isDone());
+    }
+
+    @Test
+    public void verifiesAgainstKnownLength() {
+        assertTrue(SegmentedDownloader.isComplete(1000, 1000, 1000));
+        assertFalse(SegmentedDownloader.isComplete(999, 1000, 1000));
+        assertFalse(SegmentedDownloader.isComplete(1000, 1000, 999));
+        //a part file left over from before must not pass for a complete one
+        assertFalse(SegmentedDownloader.isComplete(1200, 1000, 1000));
+    }
+
+    @Test
+    public void verifiesUnknownLengthAgainstBytesRead() {
+        assertTrue(SegmentedDownloader.isComplete(500, -1, 500));
+        assertFalse(SegmentedDownloader.isComplete(400, -1, 500));
+    }
+
+    //segments must be contiguous, start fresh and end on the last byte
+    private static void assertCovers(List<SegmentedDownloader.Segment> segments, long length) {
+        long next = 0;
+        for (SegmentedDownloader.Segment segment : segments) {
+            assertEquals(next, segment.mStart);
+            assertEquals(segment.mStart, segment.mNext);
+            assertTrue(segment.mEnd >= segment.mStart);
+            next = segment.mEnd + 1;
+        }
+        assertEquals(length, next);
+    }
+}